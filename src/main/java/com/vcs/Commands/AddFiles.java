@@ -7,6 +7,7 @@ import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 
 import com.vcs.Utils.IgnoreManager;
+import com.vcs.Utils.Pathspec;
 import com.vcs.Utils.StagingArea;
 
 import picocli.CommandLine.Command;
@@ -16,7 +17,7 @@ import picocli.CommandLine.Parameters;
 public class AddFiles implements Runnable {
     StagingArea stagingArea = new StagingArea();
     IgnoreManager ignore = new IgnoreManager();
-    @Parameters(description = "Files to add to the index")
+    @Parameters(description = "Files to add to the index; globs and ':!' exclusions are allowed")
     private String[] fileNames;
 
     @Override
@@ -30,6 +31,14 @@ public class AddFiles implements Runnable {
     }
 
     private void addFiles(String[] fileNames) throws IOException, NoSuchAlgorithmException {
+        Pathspec pathspec = Pathspec.of(fileNames);
+        if (!pathspec.isLiteral()) {
+            // Globs and exclusions are matched while walking their leading directories
+            int count = stagingArea.add(pathspec);
+            System.out.println("Added " + count + " files matching " + String.join(" ", fileNames)
+                    + " to staging area");
+            return;
+        }
 
         for (String fileName : fileNames) {
 
@@ -1,14 +1,13 @@
 package com.vcs.Commands;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 
+import com.vcs.Utils.ObjectStore;
 import com.vcs.Utils.StagingArea;
 
 import picocli.CommandLine.Command;
@@ -36,33 +35,32 @@ public class Commit implements Runnable {
 
     private void commit(String message) throws IOException, NoSuchAlgorithmException {
         // Check if there are any staged files
-        if (stagingArea.getStagedFiles().isEmpty()) {
+        if (stagingArea.getStagedFiles().isEmpty() && stagingArea.getSparseDirectories().isEmpty()) {
             System.out.println("No changes to commit");
             return;
         }
 
-        // Create commit
+        // Create commit. The index is kept as the snapshot for the next commit,
+        // so collapsed sparse directories carry their tree IDs forward.
         createCommit(stagingArea);
 
-        // Clear staging area after commit
-        stagingArea.clear();
-
     }
 
     public void createCommit(StagingArea stagingArea) throws IOException, NoSuchAlgorithmException {
-        // Create tree object from staged files
-        String treeHash = CreateTree.writeTreeFromStagedFiles();
+        String headCommit = ObjectStore.readHeadCommit();
+        String parentTree = headCommit == null ? null : ObjectStore.readTreeHashFromCommit(headCommit);
 
-        // Read the last hash commit from HEAD
-        String lastCommitHash = new String(
-                Files.readAllBytes(new File(".vcs", "refs/heads/" + getCurrentBranchName()).toPath()));
+        // Create tree object from staged files, reusing the parent's subtrees
+        String treeHash = CreateTree.writeTree(stagingArea, parentTree);
+        stagingArea.saveIndex();
 
-        if (lastCommitHash.equals("")) {
-            lastCommitHash = null;
+        if (treeHash.equals(parentTree)) {
+            System.out.println("No changes to commit");
+            return;
         }
 
         // Hash and store commit object
-        CommitTree.commitTreeCommand(treeHash, lastCommitHash, commitMessage);
+        CommitTree.commitTreeCommand(treeHash, headCommit, commitMessage);
     }
 
     public static String getCurrentBranchName() throws IOException {
@@ -0,0 +1,31 @@
+package com.vcs.Commands;
+
+import java.io.IOException;
+
+import com.vcs.Utils.CommitGraph;
+
+import picocli.CommandLine.Command;
+
+/**
+ * Writes the commit graph that log and diff read commits from instead of
+ * their objects.
+ */
+@Command(name = "commit-graph", description = "Index commits so history can be walked without reading commit objects", mixinStandardHelpOptions = true)
+public class CommitGraphCommand implements Runnable {
+
+    @Override
+    public void run() {
+        CommitGraph graph = CommitGraph.load();
+        System.out.println(graph == null ? "No commit graph" : "Commit graph has " + graph.size() + " commits");
+    }
+
+    @Command(name = "write", description = "Write a graph of every commit reachable from the branches")
+    void write() {
+        try {
+            int count = CommitGraph.write();
+            System.out.println("Wrote commit graph with " + count + " commits");
+        } catch (IOException e) {
+            System.err.println("Error writing commit graph: " + e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.vcs.Commands;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
@@ -89,7 +90,15 @@ public class CreateBlob implements Runnable {
             new File(dirName).mkdirs();
             File blobFile = new File(dirName, fileName);
 
-            try (var outPutStream = Files.newOutputStream(blobFile.toPath());
+            // Objects are immutable; another process may already have written it
+            if (blobFile.exists()) {
+                return hashedString;
+            }
+
+            // Write to a temporary file and rename so concurrent writers never
+            // expose a partially written object
+            File tempFile = File.createTempFile("tmp_obj_", null, new File(dirName));
+            try (var outPutStream = Files.newOutputStream(tempFile.toPath());
                     DeflaterOutputStream deflater = new DeflaterOutputStream(outPutStream)) {
                 deflater.write(OBJECT_TYPE_BLOB);
                 deflater.write(SPACE);
@@ -98,6 +107,8 @@ public class CreateBlob implements Runnable {
                 deflater.write(bytes);
                 deflater.finish();
             }
+            Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
         }
 
         return hashedString;
@@ -5,21 +5,27 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.stream.Stream;
 import java.util.zip.DeflaterOutputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+import com.vcs.Utils.CacheTree;
+import com.vcs.Utils.ObjectStore;
 import com.vcs.Utils.StagingArea;
 import com.vcs.Utils.TreeEntry;
 
@@ -31,6 +37,7 @@ public class CreateTree implements Runnable {
     private static final byte[] OBJECT_TYPE_TREE = "tree".getBytes();
     private static final byte[] SPACE = " ".getBytes();
     private static final byte[] NULL = { 0 };
+    private static final String DIRECTORY_MODE = "040000";
     private static final Logger LOGGER = LogManager.getLogger(CreateTree.class);
 
     @Option(names = { "-w", "--write" }, description = "Writes the tree to the object store")
@@ -49,6 +56,10 @@ public class CreateTree implements Runnable {
     /**
      * Creates a tree object from staged files.
      * 
+     * Directories whose cache-tree entry is still valid reuse their recorded
+     * tree ID; only directories on the path to an added or removed entry are
+     * rebuilt and written. The refreshed cache-tree is saved back to the index.
+     * 
      * @return SHA-1 hash of the tree object
      * @throws IOException              If an I/O error occurs
      * @throws NoSuchAlgorithmException If hash computation fails
@@ -56,32 +67,196 @@ public class CreateTree implements Runnable {
     public static String writeTreeFromStagedFiles() throws IOException, NoSuchAlgorithmException {
         // Get staged entries from the staging area
         StagingArea stagingArea = new StagingArea();
-        Map<String, String> stagedEntries = stagingArea.getStagedFiles();
 
-        // Collect tree entries from staged files and directories
-        List<TreeEntry> entries = collectTreeEntriesFromStaged(stagedEntries);
+        String treeHash = writeTree(stagingArea, ObjectStore.readHeadTree());
+
+        // Persist the refreshed cache-tree for the next write
+        stagingArea.saveIndex();
+
+        return treeHash;
+    }
+
+    /**
+     * Writes the tree for the whole index on top of a base tree, usually the
+     * parent commit's. Directories the cache-tree knows nothing about are
+     * compared against the matching subtree of the base, and adopt its ID when
+     * the index entries are identical, so only the trees on the path to a
+     * changed entry are rebuilt. The caller is responsible for saving the
+     * index.
+     * 
+     * @param stagingArea Index to write
+     * @param baseTree    Tree hash to reuse subtrees from, or null
+     * @return SHA-1 hash of the root tree object
+     * @throws IOException              If an I/O error occurs
+     * @throws NoSuchAlgorithmException If hash computation fails
+     */
+    public static String writeTree(StagingArea stagingArea, String baseTree)
+            throws IOException, NoSuchAlgorithmException {
+        return writeTreeFromIndex(stagingArea, stagingArea.getIndexEntries(), "", stagingArea.getCacheTree(),
+                baseTree);
+    }
+
+    /**
+     * Writes the tree for one directory of the index, recursing only into
+     * subdirectories whose cache-tree node is invalid. Entries are built from
+     * the hashes and modes stored in the index; the working tree is never read.
+     * 
+     * @param stagingArea Index the entries belong to
+     * @param index     Path-ordered index entries
+     * @param directory Directory relative to the root, or "" for the root
+     * @param node      Cache-tree node for the directory
+     * @param baseTree  Tree of the same directory in the base, or null
+     * @return SHA-1 hash of the directory's tree object
+     * @throws IOException              If an I/O error occurs
+     * @throws NoSuchAlgorithmException If hash computation fails
+     */
+    private static String writeTreeFromIndex(StagingArea stagingArea, NavigableMap<String, String> index,
+            String directory, CacheTree node, String baseTree)
+            throws IOException, NoSuchAlgorithmException {
+        if (node.isValid()) {
+            return node.getTreeHash();
+        }
+
+        List<TreeEntry> entries = new ArrayList<>();
+        Set<String> subdirectories = new HashSet<>();
+        Map<String, String> baseSubtrees = null;
+        String prefix = directory.isEmpty() ? "" : directory + "/";
+        int entryCount = 0;
+
+        String key = index.ceilingKey(prefix);
+        while (key != null && key.startsWith(prefix)) {
+            String rest = key.substring(prefix.length());
+            int slash = rest.indexOf('/');
+
+            if (slash < 0) {
+                // File directly in this directory
+                if (!isHiddenPath(key)) {
+                    entries.add(new TreeEntry(rest, stagingArea.getMode(key), index.get(key)));
+                    entryCount++;
+                }
+                key = index.higherKey(key);
+                continue;
+            }
+
+            String name = rest.substring(0, slash);
+            String childPath = prefix + name;
+            if (slash == rest.length() - 1) {
+                // Collapsed sparse directory: its tree ID is carried over as-is
+                entries.add(new TreeEntry(name, DIRECTORY_MODE, index.get(key)));
+                node.removeChild(name);
+                entryCount++;
+            } else {
+                CacheTree child = node.getChild(name);
+                String baseChild = null;
+                if ((child == null || !child.isValid()) && baseTree != null) {
+                    // Only read the base tree once a child actually needs it
+                    if (baseSubtrees == null) {
+                        baseSubtrees = listSubtrees(baseTree);
+                    }
+                    baseChild = baseSubtrees.get(name);
+                }
+                if (child == null) {
+                    child = new CacheTree();
+                    node.putChild(name, child);
+                    if (baseChild != null) {
+                        adoptBaseTree(stagingArea, index, childPath, baseChild, child);
+                    }
+                }
+
+                String childHash = writeTreeFromIndex(stagingArea, index, childPath, child, baseChild);
+                entries.add(new TreeEntry(name, DIRECTORY_MODE, childHash));
+                subdirectories.add(name);
+                entryCount += child.getEntryCount();
+            }
+
+            // Skip the rest of the child's entries; '0' sorts directly after '/'
+            key = index.ceilingKey(childPath + "0");
+        }
+        node.retainChildren(subdirectories);
 
         // Sort entries lexicographically by name
         entries.sort(Comparator.comparing(TreeEntry::getName));
 
-        // Compute raw tree content
         byte[] treeContent = computeTreeContent(entries);
+        String treeHash = hashTreeContent(treeContent);
+        writeTreeObject(treeHash, treeContent);
 
-        // Compute hash
+        node.update(treeHash, entryCount);
+        return treeHash;
+    }
+
+    /**
+     * Compares the index entries under a directory with a base tree and
+     * records the base tree IDs in the cache-tree for every subdirectory that
+     * matches exactly. Nothing is hashed or written; directories that differ
+     * are left invalid for the writer to rebuild.
+     * 
+     * @param stagingArea Index the entries belong to
+     * @param index     Path-ordered index entries
+     * @param directory Directory relative to the root
+     * @param baseTree  Tree of the same directory in the base
+     * @param node      Empty cache-tree node to fill in
+     * @return true if the whole directory matches the base tree
+     * @throws IOException If a base tree cannot be read
+     */
+    private static boolean adoptBaseTree(StagingArea stagingArea, NavigableMap<String, String> index,
+            String directory, String baseTree, CacheTree node) throws IOException {
+        String prefix = directory + "/";
+        boolean matches = true;
+        int entryCount = 0;
+
+        for (TreeEntryDisplay entry : ReadTree.listTreeContents(baseTree)) {
+            String path = prefix + entry.name;
+            if (!entry.type.equals("tree")) {
+                matches &= entry.hash.equals(index.get(path)) && entry.mode.equals(stagingArea.getMode(path));
+                entryCount++;
+            } else if (index.containsKey(path + "/")) {
+                matches &= entry.hash.equals(index.get(path + "/"));
+                entryCount++;
+            } else {
+                CacheTree child = new CacheTree();
+                node.putChild(entry.name, child);
+                if (adoptBaseTree(stagingArea, index, path, entry.hash, child)) {
+                    entryCount += child.getEntryCount();
+                } else {
+                    matches = false;
+                }
+            }
+        }
+
+        // Every index entry under the directory must have been matched
+        if (!matches || index.subMap(prefix, true, directory + "0", false).size() != entryCount) {
+            return false;
+        }
+        node.update(baseTree, entryCount);
+        return true;
+    }
+
+    private static Map<String, String> listSubtrees(String treeHash) throws IOException {
+        Map<String, String> subtrees = new HashMap<>();
+        for (TreeEntryDisplay entry : ReadTree.listTreeContents(treeHash)) {
+            if (entry.type.equals("tree")) {
+                subtrees.put(entry.name, entry.hash);
+            }
+        }
+        return subtrees;
+    }
+
+    /**
+     * Computes the object hash of raw tree content.
+     * 
+     * @param treeContent Raw tree content bytes
+     * @return SHA-1 hash of the tree object
+     * @throws NoSuchAlgorithmException If hash computation fails
+     */
+    private static String hashTreeContent(byte[] treeContent) throws NoSuchAlgorithmException {
         MessageDigest hash = MessageDigest.getInstance("SHA-1");
         hash.update(OBJECT_TYPE_TREE);
         hash.update(SPACE);
         hash.update(String.valueOf(treeContent.length).getBytes());
         hash.update(NULL);
         hash.update(treeContent);
-
-        byte[] hashedBytes = hash.digest();
-        String hashedString = HexFormat.of().formatHex(hashedBytes);
-
-        // Write to object store
-        writeTreeObject(hashedString, treeContent);
-
-        return hashedString;
+        return HexFormat.of().formatHex(hash.digest());
     }
 
     /**
@@ -107,12 +282,12 @@ public class CreateTree implements Runnable {
                 if (Files.isDirectory(path)) {
                     // Recursive tree creation for subdirectories
                     String subTreeHash = createTreeForDirectory(path);
-                    entries.add(new TreeEntry(new File(dirPath.toFile(), name)));
+                    entries.add(new TreeEntry(name, DIRECTORY_MODE, subTreeHash));
                 } else if (Files.isRegularFile(path)) {
                     // For files, create a blob
                     byte[] bytes = Files.readAllBytes(path);
                     String fileHash = CreateBlob.hashObject(bytes, true);
-                    entries.add(new TreeEntry(new File(dirPath.toFile(), name)));
+                    entries.add(new TreeEntry(name, TreeEntry.fileMode(path), fileHash));
                 }
             }
         }
@@ -140,106 +315,6 @@ public class CreateTree implements Runnable {
         return hashedString;
     }
 
-    /**
-     * Collects tree entries from staged files and directories.
-     * 
-     * @param stagedEntries Map of staged entries
-     * @return List of tree entries
-     * @throws IOException              If an I/O error occurs
-     * @throws NoSuchAlgorithmException If hash computation fails
-     */
-    private static List<TreeEntry> collectTreeEntriesFromStaged(Map<String, String> stagedEntries)
-            throws IOException, NoSuchAlgorithmException {
-        List<TreeEntry> entries = new ArrayList<>();
-
-        // Group staged entries by their top-level directory
-        Map<String, List<Map.Entry<String, String>>> groupedEntries = stagedEntries.entrySet().stream()
-                .filter(entry -> !isHiddenPath(entry.getKey()))
-                .collect(Collectors.groupingBy(
-                        entry -> getTopLevelDirectory(entry.getKey()),
-                        Collectors.toList()));
-
-        // Process each top-level directory group
-        for (Map.Entry<String, List<Map.Entry<String, String>>> dirGroup : groupedEntries.entrySet()) {
-            String topLevelDir = dirGroup.getKey();
-            List<Map.Entry<String, String>> dirEntries = dirGroup.getValue();
-
-            // If it's a directory with multiple entries
-            if (dirEntries.size() > 1 || hasSubdirectories(dirEntries)) {
-                // Create a subtree for this directory
-                List<TreeEntry> subEntries = new ArrayList<>();
-
-                for (Map.Entry<String, String> entry : dirEntries) {
-                    Path filePath = Paths.get(entry.getKey());
-                    String relativePath = topLevelDir.isEmpty() ? filePath.getFileName().toString()
-                            : filePath.toString().substring(topLevelDir.length() + 1);
-
-                    // Create TreeEntry with the file
-                    subEntries.add(new TreeEntry(filePath.toFile()));
-                }
-
-                // Sort subtree entries
-                subEntries.sort(Comparator.comparing(TreeEntry::getName));
-
-                // Compute subtree content and hash
-                byte[] subTreeContent = computeTreeContent(subEntries);
-                MessageDigest hash = MessageDigest.getInstance("SHA-1");
-                hash.update(OBJECT_TYPE_TREE);
-                hash.update(SPACE);
-                hash.update(String.valueOf(subTreeContent.length).getBytes());
-                hash.update(NULL);
-                hash.update(subTreeContent);
-                byte[] hashedBytes = hash.digest();
-                String subTreeHash = HexFormat.of().formatHex(hashedBytes);
-
-                // Write subtree to object store
-                writeTreeObject(subTreeHash, subTreeContent);
-
-                // Add subtree to main tree entries
-                entries.add(new TreeEntry(
-                        new File(topLevelDir),
-                        TreeEntry.EntryType.TREE,
-                        subTreeHash));
-            } else {
-                // For single file or root-level files
-                for (Map.Entry<String, String> entry : dirEntries) {
-                    Path filePath = Paths.get(entry.getKey());
-                    entries.add(new TreeEntry(filePath.toFile()));
-                }
-            }
-        }
-
-        return entries;
-    }
-
-    /**
-     * Get the top-level directory of a path.
-     * 
-     * @param path Path to get top-level directory for
-     * @return Top-level directory path
-     */
-    private static String getTopLevelDirectory(String path) {
-        // Remove leading slash if present
-        String normalizedPath = path.startsWith("/") ? path.substring(1) : path;
-
-        // Find the first slash
-        int firstSlash = normalizedPath.indexOf('/');
-
-        // If no slash, it's a root-level file
-        return firstSlash > 0 ? normalizedPath.substring(0, firstSlash) : "";
-    }
-
-    /**
-     * Check if the entries contain subdirectories.
-     * 
-     * @param entries List of entries to check
-     * @return true if entries contain subdirectories, false otherwise
-     */
-    private static boolean hasSubdirectories(List<Map.Entry<String, String>> entries) {
-        return entries.stream()
-                .anyMatch(entry -> entry.getKey().contains("/"));
-    }
-
     /**
      * Check if a path is hidden
      * 
@@ -266,7 +341,8 @@ public class CreateTree implements Runnable {
     }
 
     /**
-     * Writes the tree object to the object store.
+     * Writes the tree object to the object store, skipping objects that already
+     * exist and renaming a temporary file into place otherwise.
      * 
      * @param hashedString SHA-1 hash of the tree object
      * @param treeContent  Raw tree content bytes
@@ -281,7 +357,12 @@ public class CreateTree implements Runnable {
             dir.mkdirs();
         }
         File file = new File(fileName);
-        try (var outPutStream = Files.newOutputStream(file.toPath());
+        if (file.exists()) {
+            return;
+        }
+
+        File tempFile = File.createTempFile("tmp_obj_", null, dir);
+        try (var outPutStream = Files.newOutputStream(tempFile.toPath());
                 DeflaterOutputStream deflater = new DeflaterOutputStream(outPutStream)) {
             deflater.write(OBJECT_TYPE_TREE);
             deflater.write(SPACE);
@@ -290,6 +371,8 @@ public class CreateTree implements Runnable {
             deflater.write(treeContent);
             deflater.finish();
         }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
     }
 
 }
\ No newline at end of file
@@ -1,9 +1,18 @@
 package com.vcs.Commands;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vcs.Utils.DiffAlgorithm;
 import com.vcs.Utils.DiffTool;
+import com.vcs.Utils.ObjectStore;
+import com.vcs.Utils.Pathspec;
+import com.vcs.Utils.RenameDetector;
 import com.vcs.Utils.StagingArea;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "diff", description = "Show changes between commits")
@@ -13,8 +22,46 @@ public class DiffCommand implements Runnable {
 
     private DiffTool diffTool = new DiffTool(stage);
 
-    @Parameters(description = "Commits to compare")
-    private String[] commitHashes;
+    @Parameters(description = "Commits to compare, followed by paths to limit the diff to")
+    private String[] arguments;
+
+    @Option(names = { "--cached", "--staged" }, description = "Show changes between the index and HEAD")
+    private boolean cached;
+
+    @Option(names = "--stat", description = "Show a histogram of changed lines per file instead of hunks")
+    private boolean stat;
+
+    @Option(names = "--numstat", description = "Show inserted and deleted line counts per file instead of hunks")
+    private boolean numstat;
+
+    @Option(names = "--name-only", description = "Show only the names of changed files")
+    private boolean nameOnly;
+
+    @Option(names = "--name-status", description = "Show the names and status letters of changed files")
+    private boolean nameStatus;
+
+    @Option(names = { "-U", "--unified" }, description = "Lines of context around each change (default: 3)")
+    private int contextLines = 3;
+
+    @Option(names = "--diff-algorithm", description = "myers, patience or histogram (default: histogram)")
+    private DiffAlgorithm algorithm = DiffAlgorithm.HISTOGRAM;
+
+    @Option(names = "--big-file-threshold", description = "Size in bytes above which files are diffed as streams (default: 16 MiB)")
+    private Long bigFileThreshold;
+
+    @Option(names = { "-M", "--find-renames" }, paramLabel = "<n>",
+            description = "Report added files at least n%% similar to a deleted file as renames (default: 50)")
+    private int renameScore = RenameDetector.DEFAULT_SCORE;
+
+    @Option(names = "--no-renames", description = "Report renamed files as a deletion and an addition")
+    private boolean noRenames;
+
+    @Option(names = { "-C", "--find-copies" }, description = "Also report added files similar to modified ones as copies")
+    private boolean findCopies;
+
+    @Option(names = { "-l", "--rename-limit" }, paramLabel = "<n>",
+            description = "Most candidate sources scored for each added file (default: 32)")
+    private int candidateLimit = RenameDetector.DEFAULT_CANDIDATE_LIMIT;
 
     // When no arguments passed it will do a diff between HEAD and HEAD^
 
@@ -22,12 +69,40 @@ public class DiffCommand implements Runnable {
     public void run() {
 
         try {
-            if (commitHashes == null) {
-                diffTool.diffWorkingDirectory(stage);
+            // Leading arguments naming commits select what to compare; the
+            // rest are paths
+            List<String> commitHashes = new ArrayList<>();
+            List<String> paths = new ArrayList<>();
+            for (String argument : arguments == null ? new String[0] : arguments) {
+                if (paths.isEmpty() && isCommit(argument)) {
+                    commitHashes.add(argument);
+                } else {
+                    paths.add(argument);
+                }
+            }
+            Pathspec pathspec = new Pathspec(paths);
+            diffTool.setContextLines(contextLines);
+            diffTool.setAlgorithm(algorithm);
+            if (bigFileThreshold != null) {
+                diffTool.setBigFileThreshold(bigFileThreshold);
+            }
+            diffTool.setOutputFormat(nameOnly ? DiffTool.OutputFormat.NAME_ONLY
+                    : nameStatus ? DiffTool.OutputFormat.NAME_STATUS
+                            : numstat ? DiffTool.OutputFormat.NUMSTAT
+                                    : stat ? DiffTool.OutputFormat.STAT : DiffTool.OutputFormat.PATCH);
+            diffTool.setRenameDetector(noRenames ? null : new RenameDetector(renameScore, findCopies, candidateLimit));
 
-            } else {
-                diffTool.diffCommits(commitHashes[0], commitHashes[1]);
+            if (cached) {
+                diffTool.diffStagedVsLastCommit(stage, pathspec);
+
+            } else if (commitHashes.isEmpty()) {
+                diffTool.diffWorkingDirectory(stage, pathspec);
+
+            } else if (commitHashes.size() == 2) {
+                diffTool.diffCommits(commitHashes.get(0), commitHashes.get(1), pathspec);
 
+            } else {
+                System.out.println("Specify two commits to compare");
             }
 
         } catch (Exception e) {
@@ -36,4 +111,13 @@ public class DiffCommand implements Runnable {
 
     }
 
+    private boolean isCommit(String argument) {
+        try {
+            return argument.matches("[0-9a-f]{40}") && ObjectStore.exists(argument)
+                    && ObjectStore.readType(argument).equals("commit");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
 }
@@ -0,0 +1,47 @@
+package com.vcs.Commands;
+
+import java.io.IOException;
+
+import com.vcs.Utils.FileSystemMonitor;
+
+import picocli.CommandLine.Command;
+
+/**
+ * Starts and stops the file system monitor that lets status and diff examine
+ * only the paths changed since their last scan.
+ */
+@Command(name = "fsmonitor", description = "Watch the working tree so status only examines changed paths", mixinStandardHelpOptions = true)
+public class FileSystemMonitorCommand implements Runnable {
+
+    @Override
+    public void run() {
+        status();
+    }
+
+    @Command(name = "start", description = "Run the monitor in the foreground until it is stopped")
+    void start() {
+        try {
+            new FileSystemMonitor().run();
+        } catch (IOException e) {
+            System.err.println("Error starting file system monitor: " + e.getMessage());
+        }
+    }
+
+    @Command(name = "stop", description = "Stop the running monitor")
+    void stop() {
+        long pid = FileSystemMonitor.runningDaemon();
+        if (pid < 0) {
+            System.out.println("File system monitor is not running");
+            return;
+        }
+        ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+        System.out.println("Stopped file system monitor (pid " + pid + ")");
+    }
+
+    @Command(name = "status", description = "Show whether the monitor is running")
+    void status() {
+        long pid = FileSystemMonitor.runningDaemon();
+        System.out.println(pid < 0 ? "File system monitor is not running"
+                : "File system monitor is running (pid " + pid + ")");
+    }
+}
@@ -4,20 +4,28 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.zip.InflaterInputStream;
 
 import com.vcs.Utils.Commit;
+import com.vcs.Utils.CommitIterator;
+import com.vcs.Utils.ObjectStore;
+import com.vcs.Utils.Pathspec;
+import com.vcs.Utils.TreeDiff;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
 
 @Command(name = "log", description = "Show commit logs with advanced navigation")
 public class LogHistory implements Runnable {
@@ -29,6 +37,12 @@ public class LogHistory implements Runnable {
     @Option(names = { "-p", "--page" }, description = "Page number of commits")
     private int pageNumber = 1;
 
+    @Option(names = "--cursor", description = "Start from this commit, as printed after the previous page")
+    private String cursor;
+
+    @Parameters(description = "Only show commits that change these paths")
+    private String[] paths;
+
     @Override
     public void run() {
         logHistory();
@@ -36,21 +50,47 @@ public class LogHistory implements Runnable {
 
     public void logHistory() {
         try {
-            List<Commit> commits = getAllCommits();
-
-            int startIndex = (pageNumber - 1) * COMMITS_PER_PAGE;
-            int endIndex = Math.min(startIndex + COMMITS_PER_PAGE,
-                    Math.min(commits.size(), numberOfCommits));
+            String start = cursor != null ? cursor : ObjectStore.readHeadCommit();
+            Pathspec pathspec = Pathspec.of(paths);
+            int page = Math.max(pageNumber, 1);
+            // First commit of every page shown so far, to go back without
+            // walking from the start again
+            Map<Integer, String> pageStarts = new HashMap<>();
+            MatchingCommits commits = openPage(start, pathspec, page, pageStarts);
+
+            try (Scanner scanner = new Scanner(System.in)) {
+                while (true) {
+                    int startIndex = (page - 1) * COMMITS_PER_PAGE;
+                    int shown = 0;
+                    while (shown < COMMITS_PER_PAGE && startIndex + shown < numberOfCommits && commits.hasNext()) {
+                        if (shown == 0) {
+                            pageStarts.put(page, commits.peekHash());
+                        }
+                        displayCommit(commits.next());
+                        shown++;
+                    }
 
-            for (int i = startIndex; i < endIndex; i++) {
-                displayCommit(commits.get(i));
-            }
+                    if (shown == 0) {
+                        System.out.println("No commits to display.");
+                        return;
+                    }
+                    System.out.printf("\nShowing commits %d-%d\n", startIndex + 1, startIndex + shown);
 
-            System.out.printf("\nShowing commits %d-%d of %d total commits\n",
-                    startIndex + 1, endIndex, commits.size());
+                    if (startIndex + shown >= numberOfCommits || !commits.hasNext()) {
+                        return;
+                    }
+                    System.out.println("Next page: log --cursor " + commits.peekHash()
+                            + (paths == null ? "" : " " + String.join(" ", paths)));
 
-            if (commits.size() > endIndex) {
-                navigateCommits(commits, pageNumber);
+                    Integer nextPage = navigateCommits(scanner, page);
+                    if (nextPage == null) {
+                        return;
+                    }
+                    if (nextPage < page) {
+                        commits = openPage(start, pathspec, nextPage, pageStarts);
+                    }
+                    page = nextPage;
+                }
             }
         } catch (Exception e) {
             System.err.println("Error retrieving commit history: " + e.getMessage());
@@ -58,30 +98,96 @@ public class LogHistory implements Runnable {
         }
     }
 
-    private List<Commit> getAllCommits() throws IOException {
-        List<Commit> commits = new ArrayList<>();
-        String currentCommitHash = getCurrentCommitHash();
-
-        while (currentCommitHash != null) {
-            Commit commit = readCommitInfo(currentCommitHash);
-            if (commit == null)
-                break;
+    /**
+     * Positions a walk at the first commit of a page: at the page's recorded
+     * first commit if it has been shown before, otherwise by skipping the
+     * earlier pages. Commits after the page are not read.
+     */
+    private MatchingCommits openPage(String start, Pathspec pathspec, int page, Map<Integer, String> pageStarts) {
+        String pageStart = pageStarts.get(page);
+        if (pageStart != null) {
+            return new MatchingCommits(pageStart, pathspec);
+        }
+        MatchingCommits commits = new MatchingCommits(start, pathspec);
+        for (int i = 0; i < (page - 1) * COMMITS_PER_PAGE && commits.hasNext(); i++) {
+            commits.skip();
+        }
+        return commits;
+    }
 
-            commits.add(commit);
+    /**
+     * Commits of the first-parent history that change the selected paths,
+     * found one at a time as they are asked for. Only commits returned by
+     * {@link #next()} are parsed in full; the walk itself needs just parents
+     * and trees, which come from the commit graph when there is one.
+     */
+    private class MatchingCommits implements Iterator<Commit> {
+        private final CommitIterator hashes;
+        private final Pathspec pathspec;
+        private String nextHash;
+
+        MatchingCommits(String start, Pathspec pathspec) {
+            this.hashes = new CommitIterator(start);
+            this.pathspec = pathspec;
+        }
 
-            currentCommitHash = commit.getParent_commit_hash();
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextHash == null && hashes.hasNext()) {
+                    String commitHash = hashes.next();
+                    if (pathspec.matchesAll()
+                            || changesPaths(commitHash, ObjectStore.readParentHash(commitHash), pathspec)) {
+                        nextHash = commitHash;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return nextHash != null;
         }
 
-        return commits;
-    }
+        @Override
+        public Commit next() {
+            String commitHash = peekHash();
+            nextHash = null;
+            Commit commit = readCommitInfo(commitHash);
+            if (commit == null) {
+                throw new UncheckedIOException(new IOException("Cannot read commit " + commitHash));
+            }
+            return commit;
+        }
 
-    private String getCurrentCommitHash() throws IOException {
+        /**
+         * Moves past the next commit without reading it.
+         */
+        void skip() {
+            peekHash();
+            nextHash = null;
+        }
 
-        Path headFile = Paths.get(".vcs/refs/heads/" + getCurrentBranchName());
-        if (!Files.exists(headFile)) {
-            throw new IOException("HEAD file not found");
+        /**
+         * @return Hash of the commit the next call to {@link #next()} returns
+         */
+        String peekHash() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return nextHash;
         }
-        return new String(Files.readAllBytes(headFile)).trim();
+    }
+
+    /**
+     * Checks whether a commit changes any path the pathspec selects. Only
+     * subtrees whose IDs differ from the parent's and that can contain a
+     * selected path are read.
+     */
+    private boolean changesPaths(String commitHash, String parentHash, Pathspec pathspec) throws IOException {
+        String tree = ObjectStore.readTreeHashFromCommit(commitHash);
+        String parentTree = parentHash == null || parentHash.isEmpty() ? null
+                : ObjectStore.readTreeHashFromCommit(parentHash);
+        // The walk stops at the first change
+        return !new TreeDiff(pathspec).walk(parentTree, tree, entry -> false);
     }
 
     public static String getCurrentBranchName() throws IOException {
@@ -193,41 +299,38 @@ public class LogHistory implements Runnable {
         System.out.println("\n    " + commit.getMessage() + "\n");
     }
 
-    private void navigateCommits(List<Commit> commits, int currentPage) {
-        try (Scanner scanner = new Scanner(System.in)) {
-            while (true) {
-                System.out.println("\nCommit Navigation:");
-                System.out.println("n - Next page");
-                System.out.println("p - Previous page");
-                System.out.println("q - Quit");
-                System.out.print("Enter your choice: ");
-
-                String choice = scanner.nextLine().trim().toLowerCase();
-
-                switch (choice) {
-                    case "n":
-                        if ((currentPage * COMMITS_PER_PAGE) < commits.size()) {
-                            pageNumber = currentPage + 1;
-                            logHistory();
-                            return;
-                        } else {
-                            System.out.println("No more commits to display.");
-                        }
-                        break;
-                    case "p":
-                        if (currentPage > 1) {
-                            pageNumber = currentPage - 1;
-                            logHistory();
-                            return;
-                        } else {
-                            System.out.println("Already at the first page.");
-                        }
-                        break;
-                    case "q":
-                        return;
-                    default:
-                        System.out.println("Invalid choice. Try again.");
-                }
+    /**
+     * Asks which page to show next.
+     *
+     * @return The page to show, or null to stop
+     */
+    private Integer navigateCommits(Scanner scanner, int currentPage) {
+        while (true) {
+            System.out.println("\nCommit Navigation:");
+            System.out.println("n - Next page");
+            System.out.println("p - Previous page");
+            System.out.println("q - Quit");
+            System.out.print("Enter your choice: ");
+
+            if (!scanner.hasNextLine()) {
+                System.out.println();
+                return null;
+            }
+            String choice = scanner.nextLine().trim().toLowerCase();
+
+            switch (choice) {
+                case "n":
+                    return currentPage + 1;
+                case "p":
+                    if (currentPage > 1) {
+                        return currentPage - 1;
+                    }
+                    System.out.println("Already at the first page.");
+                    break;
+                case "q":
+                    return null;
+                default:
+                    System.out.println("Invalid choice. Try again.");
             }
         }
     }
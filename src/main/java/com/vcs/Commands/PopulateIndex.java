@@ -0,0 +1,139 @@
+package com.vcs.Commands;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+import com.vcs.Utils.CacheTree;
+import com.vcs.Utils.ObjectStore;
+import com.vcs.Utils.SparseCheckout;
+import com.vcs.Utils.StagingArea;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Loads a tree into the index without touching the working tree.
+ *
+ * Only tree objects are read: blobs are recorded by hash, directories outside
+ * the sparse-checkout cone become single collapsed entries, and every tree ID
+ * is recorded in the cache-tree so the next write-tree is free.
+ */
+@Command(name = "read-tree", description = "Reads a tree into the index without touching the working tree", mixinStandardHelpOptions = true)
+public class PopulateIndex implements Runnable {
+
+    @Parameters(index = "0", description = "Tree-ish to read (HEAD, a branch, a commit or a tree hash)")
+    private String treeIsh;
+
+    @Override
+    public void run() {
+        try {
+            String treeHash = ObjectStore.resolveTree(treeIsh);
+
+            StagingArea stagingArea = new StagingArea();
+            ConcurrentSkipListMap<String, String> entries = new ConcurrentSkipListMap<>();
+            Map<String, String> modes = new ConcurrentHashMap<>();
+            CacheTree cacheTree = readTree(treeHash, stagingArea.getSparseCheckout(), entries, modes);
+
+            stagingArea.replaceAll(entries, modes, cacheTree);
+            stagingArea.saveIndex();
+            System.out.println("Read tree " + treeHash + " into the index (" + entries.size() + " entries)");
+        } catch (IOException e) {
+            System.err.println("Error reading tree into index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a tree and all its subtrees in parallel.
+     *
+     * @param treeHash       SHA-1 hash of the root tree
+     * @param sparseCheckout Cone used to decide which directories to collapse
+     * @param entries        Concurrent map receiving the index entries
+     * @param modes          Concurrent map receiving non-default file modes
+     * @return Fully valid cache-tree for the entries
+     * @throws IOException If a tree object cannot be read
+     */
+    public static CacheTree readTree(String treeHash, SparseCheckout sparseCheckout, Map<String, String> entries,
+            Map<String, String> modes) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return pool.invoke(new TreeReader(treeHash, "", sparseCheckout, entries, modes));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads one tree object and forks a task for every subtree in the cone.
+     */
+    private static class TreeReader extends RecursiveTask<CacheTree> {
+        private static final long serialVersionUID = 1L;
+
+        private final String treeHash;
+        private final String path;
+        private final SparseCheckout sparseCheckout;
+        private final Map<String, String> entries;
+        private final Map<String, String> modes;
+
+        TreeReader(String treeHash, String path, SparseCheckout sparseCheckout, Map<String, String> entries,
+                Map<String, String> modes) {
+            this.treeHash = treeHash;
+            this.path = path;
+            this.sparseCheckout = sparseCheckout;
+            this.entries = entries;
+            this.modes = modes;
+        }
+
+        @Override
+        protected CacheTree compute() {
+            List<TreeEntryDisplay> treeEntries;
+            try {
+                treeEntries = ReadTree.listTreeContents(treeHash);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            CacheTree node = new CacheTree();
+            List<TreeEntryDisplay> subtreeEntries = new ArrayList<>();
+            List<TreeReader> subtrees = new ArrayList<>();
+            int entryCount = 0;
+
+            for (TreeEntryDisplay entry : treeEntries) {
+                String entryPath = path.isEmpty() ? entry.name : path + "/" + entry.name;
+                if (!entry.type.equals("tree")) {
+                    entries.put(entryPath, entry.hash);
+                    if (!entry.mode.equals("100644")) {
+                        modes.put(entryPath, entry.mode);
+                    }
+                    entryCount++;
+                } else if (sparseCheckout.isSparseDirectory(entryPath)) {
+                    entries.put(entryPath + "/", entry.hash);
+                    entryCount++;
+                } else {
+                    TreeReader subtree = new TreeReader(entry.hash, entryPath, sparseCheckout, entries, modes);
+                    subtree.fork();
+                    subtrees.add(subtree);
+                    subtreeEntries.add(entry);
+                }
+            }
+
+            for (int i = 0; i < subtrees.size(); i++) {
+                CacheTree child = subtrees.get(i).join();
+                node.putChild(subtreeEntries.get(i).name, child);
+                entryCount += child.getEntryCount();
+            }
+
+            node.update(treeHash, entryCount);
+            return node;
+        }
+    }
+}
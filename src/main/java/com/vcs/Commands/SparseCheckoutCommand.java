@@ -0,0 +1,191 @@
+package com.vcs.Commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+import com.vcs.Utils.ObjectStore;
+import com.vcs.Utils.SparseCheckout;
+import com.vcs.Utils.StagingArea;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Manages cone-mode sparse checkouts.
+ *
+ * Directories outside the cone are collapsed to a single tree entry in the
+ * index and their clean files are removed from the working tree; directories
+ * brought back into the cone are expanded from their tree objects.
+ */
+@Command(name = "sparse-checkout", description = "Restrict the working tree to a set of directories", mixinStandardHelpOptions = true)
+public class SparseCheckoutCommand implements Runnable {
+
+    @Override
+    public void run() {
+        list();
+    }
+
+    @Command(name = "list", description = "Show the directories in the sparse-checkout cone")
+    void list() {
+        SparseCheckout sparseCheckout = new SparseCheckout();
+        if (!sparseCheckout.isEnabled()) {
+            System.out.println("Sparse checkout is not enabled");
+            return;
+        }
+        sparseCheckout.getConeDirectories().forEach(System.out::println);
+    }
+
+    @Command(name = "set", description = "Set the directories in the sparse-checkout cone")
+    void set(@Parameters(arity = "1..*", description = "Directories to keep in the working tree") String[] directories) {
+        try {
+            new SparseCheckout().setConeDirectories(Arrays.asList(directories));
+
+            // Reload so the index sees the new cone
+            StagingArea stagingArea = new StagingArea();
+            SparseCheckout sparseCheckout = stagingArea.getSparseCheckout();
+
+            expandIncludedDirectories(stagingArea, sparseCheckout);
+
+            String headTree = ObjectStore.readHeadTree();
+            if (headTree == null) {
+                System.out.println("No commits yet; directories will be collapsed after the first commit");
+            } else {
+                collapseExcludedDirectories(stagingArea, sparseCheckout, headTree, "");
+            }
+
+            stagingArea.saveIndex();
+            System.out.println("Sparse checkout set to " + sparseCheckout.getConeDirectories());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            System.err.println("Error updating sparse checkout: " + e.getMessage());
+        }
+    }
+
+    @Command(name = "disable", description = "Restore the full working tree")
+    void disable() {
+        try {
+            StagingArea stagingArea = new StagingArea();
+            SparseCheckout sparseCheckout = stagingArea.getSparseCheckout();
+            sparseCheckout.disable();
+
+            expandIncludedDirectories(stagingArea, sparseCheckout);
+            stagingArea.saveIndex();
+            System.out.println("Sparse checkout disabled");
+        } catch (IOException e) {
+            System.err.println("Error disabling sparse checkout: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Expands every collapsed directory that is now part of the cone and
+     * writes its files into the working tree.
+     */
+    private void expandIncludedDirectories(StagingArea stagingArea, SparseCheckout sparseCheckout)
+            throws IOException {
+        for (Map.Entry<String, String> directory : stagingArea.getSparseDirectories().entrySet()) {
+            if (sparseCheckout.isSparseDirectory(directory.getKey())) {
+                continue;
+            }
+
+            Map<String, String> files = new HashMap<>();
+            Map<String, String> modes = new HashMap<>();
+            ObjectStore.collectTreeFiles(directory.getValue(), directory.getKey(), files, modes);
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                if (sparseCheckout.isFileIncluded(file.getKey())) {
+                    checkoutFile(file.getKey(), file.getValue(), modes.get(file.getKey()));
+                }
+            }
+            stagingArea.expandDirectory(directory.getKey(), files, modes);
+        }
+    }
+
+    /**
+     * Walks the HEAD tree and collapses every directory outside the cone whose
+     * index entries and working tree files are unchanged from HEAD.
+     */
+    private void collapseExcludedDirectories(StagingArea stagingArea, SparseCheckout sparseCheckout,
+            String treeHash, String prefix) throws IOException, NoSuchAlgorithmException {
+        Map<String, String> sparseDirectories = stagingArea.getSparseDirectories();
+
+        for (TreeEntryDisplay entry : ReadTree.listTreeContents(treeHash)) {
+            if (!entry.type.equals("tree")) {
+                continue;
+            }
+
+            String path = prefix.isEmpty() ? entry.name : prefix + "/" + entry.name;
+            if (sparseCheckout.isDirectoryIncluded(path)) {
+                collapseExcludedDirectories(stagingArea, sparseCheckout, entry.hash, path);
+                continue;
+            }
+            if (sparseDirectories.containsKey(path)) {
+                continue;
+            }
+
+            Map<String, String> headFiles = new HashMap<>();
+            ObjectStore.collectTreeFiles(entry.hash, path, headFiles);
+
+            // Only the index range below the directory is read
+            Map<String, String> indexFiles = new HashMap<>();
+            stagingArea.getIndexEntries().subMap(path + "/", path + "0").forEach((file, hash) -> {
+                if (!file.endsWith("/")) {
+                    indexFiles.put(file, hash);
+                }
+            });
+
+            if (!headFiles.equals(indexFiles) || !isWorkingTreeClean(indexFiles)) {
+                System.out.println("Keeping " + path + " expanded: it has uncommitted changes");
+                continue;
+            }
+
+            removeFiles(path, indexFiles);
+            stagingArea.collapseDirectory(path, entry.hash);
+        }
+    }
+
+    private boolean isWorkingTreeClean(Map<String, String> files) throws IOException, NoSuchAlgorithmException {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path filePath = Paths.get(file.getKey());
+            if (Files.exists(filePath)
+                    && !CreateBlob.hashObject(Files.readAllBytes(filePath), false).equals(file.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeFiles(String directory, Map<String, String> files) throws IOException {
+        for (String file : files.keySet()) {
+            Files.deleteIfExists(Paths.get(file));
+        }
+
+        // Remove directories left empty, deepest first
+        Path root = Paths.get(directory);
+        if (Files.isDirectory(root)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted((a, b) -> b.getNameCount() - a.getNameCount())
+                        .filter(Files::isDirectory)
+                        .forEach(dir -> dir.toFile().delete());
+            }
+        }
+    }
+
+    private void checkoutFile(String file, String blobHash, String mode) throws IOException {
+        Path filePath = Paths.get(file);
+        if (Files.exists(filePath)) {
+            return;
+        }
+        if (filePath.getParent() != null) {
+            Files.createDirectories(filePath.getParent());
+        }
+        Files.write(filePath, ObjectStore.readContent(blobHash));
+        if ("100755".equals(mode)) {
+            filePath.toFile().setExecutable(true);
+        }
+    }
+}
@@ -3,12 +3,29 @@ package com.vcs.Commands;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+import com.vcs.Utils.IgnoreManager;
+import com.vcs.Utils.ObjectStore;
+import com.vcs.Utils.SparseCheckout;
+import com.vcs.Utils.StagingArea;
+import com.vcs.Utils.TreeWalker;
+import com.vcs.Utils.TreeWalker.Change;
+import com.vcs.Utils.WorkingTreeScanner;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "switch", description = "Change the branch")
 public class SwitchBranch implements Runnable {
+    private static final String DIRECTORY_MODE = "040000";
 
     @Parameters(index = "0", description = "Name of the branch to switch")
     private String branchName;
@@ -23,21 +40,191 @@ public class SwitchBranch implements Runnable {
 
         // Change the reference of HEAD
 
-        try {
-            if (!new File(root, "refs/heads/" + name).exists()) {
-
-                throw new IOException("File not found");
+        File branchRef = new File(root, "refs/heads/" + name);
+        if (!branchRef.exists()) {
+            System.out.println("Invalid branch name:" + name);
+            return;
+        }
 
+        try {
+            String commitHash = new String(Files.readAllBytes(branchRef.toPath())).trim();
+            if (!commitHash.isEmpty() && !checkout(ObjectStore.readTreeHashFromCommit(commitHash))) {
+                return;
             }
+
             File branch = new File(root, "HEAD");
 
             Files.write(branch.toPath(), ("ref: refs/heads/" + name + "\n").getBytes());
 
-            System.out.println("Switched to branch" + name);
-        } catch (Exception e) {
-            System.out.println("Invalid branch name:" + name);
+            System.out.println("Switched to branch " + name);
+        } catch (IOException e) {
+            System.out.println("Error switching to branch " + name + ": " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Updates the index and the working tree to a tree.
+     *
+     * Only paths where the target differs from the index are touched; whole
+     * directories with matching tree IDs are skipped. A path whose index entry
+     * differs from HEAD keeps its staged change when the target agrees with
+     * HEAD, and a file with uncommitted changes is never overwritten.
+     *
+     * @param targetTree Tree to check out
+     * @return false if local changes prevented the checkout
+     */
+    private boolean checkout(String targetTree) throws IOException {
+        StagingArea stagingArea = new StagingArea();
+        SparseCheckout sparseCheckout = stagingArea.getSparseCheckout();
+        HeadTree headTree = new HeadTree(ObjectStore.readHeadTree());
+
+        List<Change> updates = new ArrayList<>();
+        List<String> conflicts = new ArrayList<>();
+        try (WorkingTreeScanner workingTree = new WorkingTreeScanner(new IgnoreManager(), sparseCheckout, 1)) {
+            new TreeWalker(stagingArea, targetTree, true, null).walk(change -> {
+                TreeEntryDisplay headEntry = headTree.find(change.path);
+                String headHash = headEntry == null ? null : headEntry.hash;
+
+                if (!Objects.equals(change.indexHash, headHash)) {
+                    // Staged change: kept if the target does not touch the path
+                    if (!Objects.equals(change.treeHash, headHash)) {
+                        conflicts.add(change.path);
+                    }
+                    return true;
+                }
+
+                if (!DIRECTORY_MODE.equals(change.indexMode) && !DIRECTORY_MODE.equals(change.treeMode)) {
+                    String workingHash = workingTree.hashFile(change.path);
+                    if (!Objects.equals(workingHash, change.indexHash)
+                            && !Objects.equals(workingHash, change.treeHash)) {
+                        conflicts.add(change.path);
+                        return true;
+                    }
+                }
+                updates.add(change);
+                return true;
+            });
+        }
+
+        if (!conflicts.isEmpty()) {
+            System.out.println("Your local changes to the following files would be overwritten:");
+            conflicts.forEach(path -> System.out.println("  " + path));
+            System.out.println("Commit them before you switch branches.");
+            return false;
+        }
+
+        // Removals first, so a file can replace a directory and vice versa
+        for (Change change : updates) {
+            if (change.treeHash == null) {
+                removePath(stagingArea, change);
+            }
+        }
+        for (Change change : updates) {
+            if (change.treeHash != null) {
+                writePath(stagingArea, sparseCheckout, change);
+            }
+        }
+
+        stagingArea.saveIndex();
+        return true;
+    }
+
+    private void removePath(StagingArea stagingArea, Change change) throws IOException {
+        if (DIRECTORY_MODE.equals(change.indexMode)) {
+            stagingArea.removeEntry(change.path + "/");
+            return;
         }
 
+        Path file = Paths.get(change.path);
+        Files.deleteIfExists(file);
+        stagingArea.removeEntry(change.path);
+
+        // Remove directories left empty
+        Path parent = file.getParent();
+        while (parent != null && Files.isDirectory(parent) && isEmpty(parent)) {
+            Files.delete(parent);
+            parent = parent.getParent();
+        }
+    }
+
+    private void writePath(StagingArea stagingArea, SparseCheckout sparseCheckout, Change change)
+            throws IOException {
+        if (DIRECTORY_MODE.equals(change.treeMode)) {
+            // A collapsed directory only needs its tree ID updated
+            if (change.indexHash != null && !DIRECTORY_MODE.equals(change.indexMode)) {
+                stagingArea.removeEntry(change.path);
+            }
+            stagingArea.collapseDirectory(change.path, change.treeHash);
+            return;
+        }
+
+        if (DIRECTORY_MODE.equals(change.indexMode)) {
+            stagingArea.removeEntry(change.path + "/");
+        }
+
+        if (sparseCheckout.isFileIncluded(change.path)) {
+            Path file = Paths.get(change.path);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, ObjectStore.readContent(change.treeHash));
+            file.toFile().setExecutable("100755".equals(change.treeMode));
+        }
+        stagingArea.setEntry(change.path, change.treeHash, change.treeMode);
+    }
+
+    /**
+     * Looks up HEAD's entries for the paths of a walk. Changes arrive in path
+     * order, so the trees of the directories on the current path are kept and
+     * each HEAD tree is read at most once.
+     */
+    private static class HeadTree {
+        private final String rootTree;
+        // Entries of the last looked-up directory and its ancestors; null for
+        // a directory HEAD does not have
+        private final Map<String, Map<String, TreeEntryDisplay>> directories = new HashMap<>();
+
+        HeadTree(String rootTree) {
+            this.rootTree = rootTree;
+        }
+
+        TreeEntryDisplay find(String path) throws IOException {
+            int slash = path.lastIndexOf('/');
+            Map<String, TreeEntryDisplay> entries = entries(slash < 0 ? "" : path.substring(0, slash));
+            return entries == null ? null : entries.get(path.substring(slash + 1));
+        }
+
+        private Map<String, TreeEntryDisplay> entries(String directory) throws IOException {
+            if (directories.containsKey(directory)) {
+                return directories.get(directory);
+            }
+
+            String tree = rootTree;
+            if (!directory.isEmpty()) {
+                int slash = directory.lastIndexOf('/');
+                Map<String, TreeEntryDisplay> parent = entries(slash < 0 ? "" : directory.substring(0, slash));
+                TreeEntryDisplay entry = parent == null ? null : parent.get(directory.substring(slash + 1));
+                tree = entry != null && entry.type.equals("tree") ? entry.hash : null;
+            }
+
+            // Directories the walk has left are not visited again
+            directories.keySet().removeIf(key -> !key.isEmpty() && !directory.startsWith(key + "/"));
+            Map<String, TreeEntryDisplay> entries = null;
+            if (tree != null) {
+                entries = new HashMap<>();
+                for (TreeEntryDisplay entry : ReadTree.listTreeContents(tree)) {
+                    entries.put(entry.name, entry);
+                }
+            }
+            directories.put(directory, entries);
+            return entries;
+        }
     }
 
+    private boolean isEmpty(Path directory) throws IOException {
+        try (var entries = Files.list(directory)) {
+            return entries.findAny().isEmpty();
+        }
+    }
 }
@@ -6,15 +6,19 @@ import org.apache.logging.log4j.Logger;
 import com.vcs.Commands.AddFiles;
 import com.vcs.Commands.CatFile;
 import com.vcs.Commands.Commit;
+import com.vcs.Commands.CommitGraphCommand;
 import com.vcs.Commands.CommitTree;
 import com.vcs.Commands.CreateBlob;
 import com.vcs.Commands.CreateBranch;
 import com.vcs.Commands.CreateTree;
 import com.vcs.Commands.DiffCommand;
+import com.vcs.Commands.FileSystemMonitorCommand;
 import com.vcs.Commands.InitialzieRepo;
 import com.vcs.Commands.LogHistory;
+import com.vcs.Commands.PopulateIndex;
 import com.vcs.Commands.ReadTree;
 import com.vcs.Commands.ShowStatus;
+import com.vcs.Commands.SparseCheckoutCommand;
 import com.vcs.Commands.SwitchBranch;
 
 import picocli.CommandLine;
@@ -25,6 +29,7 @@ import picocli.CommandLine.Command;
         CatFile.class,
         CreateTree.class,
         ReadTree.class,
+        PopulateIndex.class,
         CommitTree.class,
         ShowStatus.class,
         AddFiles.class,
@@ -32,7 +37,10 @@ import picocli.CommandLine.Command;
         DiffCommand.class,
         LogHistory.class,
         CreateBranch.class,
-        SwitchBranch.class
+        SwitchBranch.class,
+        SparseCheckoutCommand.class,
+        FileSystemMonitorCommand.class,
+        CommitGraphCommand.class
 
 })
 public class Main implements Runnable {
@@ -40,7 +48,7 @@ public class Main implements Runnable {
     private static final Logger LOGGER = LogManager.getLogger(Main.class);
 
     public static void main(String[] args) {
-        System.exit(new CommandLine(new Main()).execute(args));
+        System.exit(new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args));
     }
 
     @Override
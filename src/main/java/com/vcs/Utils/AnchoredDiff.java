@@ -0,0 +1,106 @@
+package com.vcs.Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Base of the diff algorithms that split the input at matching "anchor"
+ * lines and recurse on the regions between them.
+ *
+ * Regions are kept on an explicit stack rather than the call stack, since a
+ * long file can split thousands of levels deep. A region without anchors is
+ * handed to {@link MyersDiff}.
+ */
+abstract class AnchoredDiff {
+    protected final int[] a;
+    protected final int[] b;
+    private final List<Edit> edits = new ArrayList<>();
+
+    /**
+     * Lines {@code [beginA, beginA + length)} of the old side equal lines
+     * {@code [beginB, beginB + length)} of the new side.
+     */
+    protected static class Match {
+        final int beginA;
+        final int beginB;
+        final int length;
+
+        Match(int beginA, int beginB, int length) {
+            this.beginA = beginA;
+            this.beginB = beginB;
+            this.length = length;
+        }
+    }
+
+    protected AnchoredDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * Finds matching blocks in a region that has no common prefix or suffix.
+     *
+     * @return Non-overlapping matches in increasing order on both sides, or
+     *         an empty list if the region has no usable anchors
+     */
+    protected abstract List<Match> anchors(int beginA, int endA, int beginB, int endB);
+
+    protected List<Edit> run() {
+        // Regions are popped in order, so edits are appended in order
+        Deque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[] { 0, a.length, 0, b.length });
+        while (!regions.isEmpty()) {
+            int[] region = regions.pop();
+            int beginA = region[0];
+            int endA = region[1];
+            int beginB = region[2];
+            int endB = region[3];
+
+            while (beginA < endA && beginB < endB && a[beginA] == b[beginB]) {
+                beginA++;
+                beginB++;
+            }
+            while (beginA < endA && beginB < endB && a[endA - 1] == b[endB - 1]) {
+                endA--;
+                endB--;
+            }
+            if (beginA == endA || beginB == endB) {
+                if (beginA < endA || beginB < endB) {
+                    addEdit(new Edit(beginA, endA, beginB, endB));
+                }
+                continue;
+            }
+
+            List<Match> matches = anchors(beginA, endA, beginB, endB);
+            if (matches.isEmpty()) {
+                MyersDiff.diff(a, beginA, endA, b, beginB, endB).forEach(this::addEdit);
+                continue;
+            }
+
+            // Push the regions between the matches, last one first
+            int nextA = endA;
+            int nextB = endB;
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                Match match = matches.get(i);
+                regions.push(new int[] { match.beginA + match.length, nextA, match.beginB + match.length, nextB });
+                nextA = match.beginA;
+                nextB = match.beginB;
+            }
+            regions.push(new int[] { beginA, nextA, beginB, nextB });
+        }
+        return edits;
+    }
+
+    private void addEdit(Edit edit) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.endA == edit.beginA && last.endB == edit.beginB) {
+                edits.set(edits.size() - 1, new Edit(last.beginA, edit.endA, last.beginB, edit.endB));
+                return;
+            }
+        }
+        edits.add(edit);
+    }
+}
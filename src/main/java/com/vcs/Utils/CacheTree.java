@@ -0,0 +1,169 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Cached tree IDs for the directories of the index.
+ *
+ * Each node records the tree hash last written for its directory and the
+ * number of index entries below it. Adding or removing a path invalidates only
+ * the nodes on the way from the root to that path, so write-tree can reuse
+ * every other subtree ID as-is. An entry count of -1 marks an invalid node.
+ */
+public class CacheTree {
+    private int entryCount = -1;
+    private String treeHash;
+    private final Map<String, CacheTree> children = new TreeMap<>();
+
+    public boolean isValid() {
+        return entryCount >= 0 && treeHash != null;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public String getTreeHash() {
+        return treeHash;
+    }
+
+    /**
+     * Records a freshly written tree for this directory.
+     *
+     * @param treeHash   Hash of the tree object
+     * @param entryCount Number of index entries below the directory
+     */
+    public void update(String treeHash, int entryCount) {
+        this.treeHash = treeHash;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Invalidates this node and every directory leading to a path.
+     *
+     * @param path Index path relative to the repository root; a trailing slash
+     *             marks a directory, which is invalidated as well
+     */
+    public void invalidate(String path) {
+        CacheTree node = this;
+        node.entryCount = -1;
+
+        String[] parts = path.split("/", -1);
+        for (int i = 0; i < parts.length - 1; i++) {
+            node = node.children.get(parts[i]);
+            if (node == null) {
+                return;
+            }
+            node.entryCount = -1;
+        }
+    }
+
+    /**
+     * Drops every cached node, forcing the next write-tree to rebuild all
+     * trees.
+     */
+    public void clear() {
+        entryCount = -1;
+        treeHash = null;
+        children.clear();
+    }
+
+    public CacheTree getChild(String name) {
+        return children.get(name);
+    }
+
+    public CacheTree getOrCreateChild(String name) {
+        return children.computeIfAbsent(name, key -> new CacheTree());
+    }
+
+    public void putChild(String name, CacheTree child) {
+        children.put(name, child);
+    }
+
+    public void removeChild(String name) {
+        children.remove(name);
+    }
+
+    /**
+     * Drops children for directories that no longer exist in the index.
+     *
+     * @param names Names of the subdirectories still present
+     */
+    public void retainChildren(Set<String> names) {
+        children.keySet().retainAll(names);
+    }
+
+    /**
+     * Finds the node for a directory.
+     *
+     * @param directory Directory relative to the repository root, or "" for the
+     *                  root
+     * @return The node, or null if nothing is cached for the directory
+     */
+    public CacheTree find(String directory) {
+        CacheTree node = this;
+        if (directory.isEmpty()) {
+            return node;
+        }
+        for (String part : directory.split("/")) {
+            node = node.children.get(part);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Serializes the tree as {@code path:entryCount:treeHash} lines in
+     * pre-order.
+     *
+     * @return Lines to store in the index
+     */
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>();
+        appendLines("", lines);
+        return lines;
+    }
+
+    private void appendLines(String path, List<String> lines) {
+        lines.add(path + ":" + (isValid() ? entryCount : -1) + ":" + (isValid() ? treeHash : ""));
+        children.forEach((name, child) -> child.appendLines(path.isEmpty() ? name : path + "/" + name, lines));
+    }
+
+    /**
+     * Parses lines written by {@link #toLines()}.
+     *
+     * @param lines Serialized cache-tree lines
+     * @return The reconstructed cache tree
+     */
+    public static CacheTree fromLines(List<String> lines) {
+        CacheTree root = new CacheTree();
+        for (String line : lines) {
+            int hashSeparator = line.lastIndexOf(':');
+            int countSeparator = line.lastIndexOf(':', hashSeparator - 1);
+            if (countSeparator < 0) {
+                continue;
+            }
+
+            String path = line.substring(0, countSeparator);
+            CacheTree node = root;
+            if (!path.isEmpty()) {
+                for (String part : path.split("/")) {
+                    node = node.getOrCreateChild(part);
+                }
+            }
+
+            String hash = line.substring(hashSeparator + 1);
+            int count = Integer.parseInt(line.substring(countSeparator + 1, hashSeparator));
+            if (count >= 0 && !hash.isEmpty()) {
+                node.update(hash, count);
+            }
+        }
+        return root;
+    }
+}
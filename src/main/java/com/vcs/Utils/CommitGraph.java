@@ -0,0 +1,445 @@
+package com.vcs.Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A memory-mapped index of every commit reachable from the branches, so
+ * history can be walked without inflating commit objects.
+ *
+ * The file lives in {@code .vcs/objects/info/commit-graph} and holds, after a
+ * header and a 256-entry fanout table over the first hash byte, the sorted
+ * commit hashes followed by one fixed-size record per commit: tree hash, the
+ * positions of the first two parents, commit time in epoch seconds and
+ * generation number. A commit with more than two parents points into a list
+ * of extra parent positions at the end of the file. The generation number of
+ * a root commit is 1 and of any other commit one more than its highest
+ * parent's.
+ *
+ * Commits made after the graph was written are not in it; callers look a
+ * commit up first and read its object only if it is missing.
+ */
+public class CommitGraph {
+    public static final Path GRAPH_FILE = Paths.get(".vcs", "objects", "info", "commit-graph");
+
+    private static final int SIGNATURE = 0x43475048; // "CGPH"
+    // Bumped when the file layout changes, so older graphs are ignored
+    private static final int VERSION = 1;
+    private static final int HASH_SIZE = 20;
+    private static final int HEADER_SIZE = 12;
+    private static final int FANOUT_SIZE = 256 * 4;
+    private static final int RECORD_SIZE = HASH_SIZE + 4 + 4 + 8 + 4;
+    private static final int NO_PARENT = 0x70000000;
+    // Set on the second parent slot of an octopus merge, and on the last of
+    // its extra parents
+    private static final int EXTRA_EDGES = 0x80000000;
+    private static final DateTimeFormatter GIT_DATE_FORMATTER = DateTimeFormatter
+            .ofPattern("EEE MMM dd HH:mm:ss yyyy Z", Locale.ENGLISH);
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static CommitGraph loaded;
+    private static boolean loadAttempted;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int hashesOffset;
+    private final int recordsOffset;
+    private final int edgesOffset;
+
+    private CommitGraph(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE + FANOUT_SIZE || buffer.getInt(0) != SIGNATURE
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a commit graph: " + GRAPH_FILE);
+        }
+        this.count = buffer.getInt(8);
+        this.hashesOffset = HEADER_SIZE + FANOUT_SIZE;
+        this.recordsOffset = hashesOffset + count * HASH_SIZE;
+        this.edgesOffset = recordsOffset + count * RECORD_SIZE;
+        if (count < 0 || edgesOffset > buffer.capacity() || fanout(255) != count) {
+            throw new IOException("Truncated commit graph: " + GRAPH_FILE);
+        }
+    }
+
+    /**
+     * Maps the commit graph, once per process.
+     *
+     * @return The graph, or null if none has been written or it cannot be read
+     */
+    public static synchronized CommitGraph load() {
+        if (!loadAttempted) {
+            loadAttempted = true;
+            if (Files.exists(GRAPH_FILE)) {
+                try (FileChannel channel = FileChannel.open(GRAPH_FILE)) {
+                    loaded = new CommitGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                } catch (IOException e) {
+                    // Walkers fall back to the commit objects
+                    loaded = null;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return Number of commits in the graph
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Looks up a commit.
+     *
+     * @param hash SHA-1 hash of the commit
+     * @return Position of the commit, or -1 if it is not in the graph
+     */
+    public int find(String hash) {
+        if (hash == null || hash.length() != HASH_SIZE * 2) {
+            return -1;
+        }
+        byte[] key;
+        try {
+            key = HEX.parseHex(hash);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+
+        int first = key[0] & 0xff;
+        int low = first == 0 ? 0 : fanout(first - 1);
+        int high = fanout(first) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = compareHash(middle, key);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Hash of the commit at a position
+     */
+    public String hashAt(int position) {
+        return readHash(hashesOffset + position * HASH_SIZE);
+    }
+
+    /**
+     * @return Tree hash of the commit at a position
+     */
+    public String treeAt(int position) {
+        return readHash(record(position));
+    }
+
+    /**
+     * @return Position of the first parent, or -1 for a root commit
+     */
+    public int firstParentAt(int position) {
+        int parent = buffer.getInt(record(position) + HASH_SIZE);
+        return parent == NO_PARENT ? -1 : parent;
+    }
+
+    /**
+     * @return Positions of every parent, in commit order
+     */
+    public int[] parentsAt(int position) {
+        int first = buffer.getInt(record(position) + HASH_SIZE);
+        int second = buffer.getInt(record(position) + HASH_SIZE + 4);
+        if (first == NO_PARENT) {
+            return new int[0];
+        }
+        if (second == NO_PARENT) {
+            return new int[] { first };
+        }
+        if ((second & EXTRA_EDGES) == 0) {
+            return new int[] { first, second };
+        }
+
+        List<Integer> parents = new ArrayList<>();
+        parents.add(first);
+        int edge = edgesOffset + (second & ~EXTRA_EDGES) * 4;
+        int value;
+        do {
+            value = buffer.getInt(edge);
+            parents.add(value & ~EXTRA_EDGES);
+            edge += 4;
+        } while ((value & EXTRA_EDGES) == 0);
+        return parents.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return Commit time of the commit at a position, in epoch seconds
+     */
+    public long timestampAt(int position) {
+        return buffer.getLong(record(position) + HASH_SIZE + 8);
+    }
+
+    /**
+     * @return Generation number of the commit at a position; a commit's is
+     *         always greater than each of its ancestors'
+     */
+    public int generationAt(int position) {
+        return buffer.getInt(record(position) + HASH_SIZE + 16);
+    }
+
+    private int fanout(int index) {
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    private int record(int position) {
+        return recordsOffset + position * RECORD_SIZE;
+    }
+
+    private int compareHash(int position, byte[] key) {
+        int offset = hashesOffset + position * HASH_SIZE;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            int order = Integer.compare(buffer.get(offset + i) & 0xff, key[i] & 0xff);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    private String readHash(int offset) {
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.get(offset, hash);
+        return HEX.formatHex(hash);
+    }
+
+    /**
+     * One commit as read from its object or from an earlier graph.
+     */
+    private static class CommitRecord {
+        final String tree;
+        final List<String> parents;
+        final long timestamp;
+
+        CommitRecord(String tree, List<String> parents, long timestamp) {
+            this.tree = tree;
+            this.parents = parents;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Writes a graph of every commit reachable from the branches and HEAD.
+     * Commits already in the current graph are copied from it, so only
+     * commits made since the last write are read from their objects.
+     *
+     * @return Number of commits written
+     * @throws IOException If a commit cannot be read or the file cannot be
+     *                     written
+     */
+    public static int write() throws IOException {
+        CommitGraph existing = load();
+        Map<String, CommitRecord> commits = new HashMap<>();
+        Deque<String> pending = new ArrayDeque<>(readTips());
+        while (!pending.isEmpty()) {
+            String hash = pending.pop();
+            if (commits.containsKey(hash)) {
+                continue;
+            }
+            int position = existing == null ? -1 : existing.find(hash);
+            CommitRecord commit = position >= 0 ? existing.readRecord(position) : readCommit(hash);
+            commits.put(hash, commit);
+            for (String parent : commit.parents) {
+                if (!commits.containsKey(parent)) {
+                    pending.push(parent);
+                }
+            }
+        }
+
+        List<String> hashes = new ArrayList<>(commits.keySet());
+        Collections.sort(hashes);
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            positions.put(hashes.get(i), i);
+        }
+        int[][] parents = new int[hashes.size()][];
+        for (int i = 0; i < hashes.size(); i++) {
+            parents[i] = commits.get(hashes.get(i)).parents.stream().mapToInt(positions::get).toArray();
+        }
+        int[] generations = computeGenerations(parents);
+
+        Files.createDirectories(GRAPH_FILE.getParent());
+        Path tempFile = Files.createTempFile(GRAPH_FILE.getParent(), "commit-graph", null);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(SIGNATURE);
+            out.writeInt(VERSION);
+            out.writeInt(hashes.size());
+
+            int[] fanout = new int[256];
+            for (String hash : hashes) {
+                fanout[Integer.parseInt(hash.substring(0, 2), 16)]++;
+            }
+            int total = 0;
+            for (int bucket : fanout) {
+                total += bucket;
+                out.writeInt(total);
+            }
+
+            for (String hash : hashes) {
+                out.write(HEX.parseHex(hash));
+            }
+
+            List<Integer> extraEdges = new ArrayList<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                CommitRecord commit = commits.get(hashes.get(i));
+                int[] commitParents = parents[i];
+                out.write(HEX.parseHex(commit.tree));
+                out.writeInt(commitParents.length > 0 ? commitParents[0] : NO_PARENT);
+                if (commitParents.length > 2) {
+                    out.writeInt(EXTRA_EDGES | extraEdges.size());
+                    for (int p = 1; p < commitParents.length; p++) {
+                        extraEdges.add(p == commitParents.length - 1 ? EXTRA_EDGES | commitParents[p]
+                                : commitParents[p]);
+                    }
+                } else {
+                    out.writeInt(commitParents.length > 1 ? commitParents[1] : NO_PARENT);
+                }
+                out.writeLong(commit.timestamp);
+                out.writeInt(generations[i]);
+            }
+
+            for (int edge : extraEdges) {
+                out.writeInt(edge);
+            }
+        }
+        Files.move(tempFile, GRAPH_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (CommitGraph.class) {
+            loaded = null;
+            loadAttempted = false;
+        }
+        return hashes.size();
+    }
+
+    /**
+     * Computes generation numbers depth-first with an explicit stack, since
+     * a long history would overflow the call stack.
+     */
+    private static int[] computeGenerations(int[][] parents) {
+        int[] generations = new int[parents.length];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int start = 0; start < parents.length; start++) {
+            if (generations[start] != 0) {
+                continue;
+            }
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                int commit = stack.peek();
+                int highest = 0;
+                boolean ready = true;
+                for (int parent : parents[commit]) {
+                    if (generations[parent] == 0) {
+                        stack.push(parent);
+                        ready = false;
+                    } else {
+                        highest = Math.max(highest, generations[parent]);
+                    }
+                }
+                if (ready) {
+                    generations[commit] = highest + 1;
+                    stack.pop();
+                }
+            }
+        }
+        return generations;
+    }
+
+    private CommitRecord readRecord(int position) {
+        List<String> parentHashes = new ArrayList<>();
+        for (int parent : parentsAt(position)) {
+            parentHashes.add(hashAt(parent));
+        }
+        return new CommitRecord(treeAt(position), parentHashes, timestampAt(position));
+    }
+
+    private static CommitRecord readCommit(String hash) throws IOException {
+        String tree = null;
+        List<String> parents = new ArrayList<>();
+        long timestamp = 0;
+        for (String line : ObjectStore.readCommitHeaders(hash)) {
+            if (line.startsWith("tree ")) {
+                tree = line.substring(5).trim();
+            } else if (line.startsWith("parent ")) {
+                String parent = line.substring(7).trim();
+                if (!parent.isEmpty()) {
+                    parents.add(parent);
+                }
+            } else if (line.startsWith("committer ")) {
+                timestamp = parseTimestamp(line);
+            }
+        }
+        if (tree == null) {
+            throw new IOException("No tree hash found in commit object " + hash);
+        }
+        return new CommitRecord(tree, parents, timestamp);
+    }
+
+    /**
+     * Reads the time off a {@code committer <name> <date>} line, where the
+     * date is the last six words, as in "Wed Feb 22 10:38:36 2023 +0000".
+     */
+    private static long parseTimestamp(String line) {
+        String[] words = line.split(" ");
+        if (words.length < 7) {
+            return 0;
+        }
+        String date = String.join(" ", List.of(words).subList(words.length - 6, words.length));
+        try {
+            return ZonedDateTime.parse(date, GIT_DATE_FORMATTER).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private static Set<String> readTips() throws IOException {
+        Set<String> tips = new HashSet<>();
+        Path heads = Paths.get(".vcs", "refs", "heads");
+        if (Files.isDirectory(heads)) {
+            try (Stream<Path> refs = Files.walk(heads)) {
+                for (Path ref : (Iterable<Path>) refs.filter(Files::isRegularFile)::iterator) {
+                    String hash = Files.readString(ref).trim();
+                    if (!hash.isEmpty()) {
+                        tips.add(hash);
+                    }
+                }
+            }
+        }
+        String head = ObjectStore.readHeadCommit();
+        if (head != null) {
+            tips.add(head);
+        }
+        return tips;
+    }
+}
@@ -0,0 +1,67 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks history from a commit along first parents, newest first.
+ *
+ * Commits are read on demand: the parent of a commit is looked up only when
+ * the commit after it is asked for, so stopping after a few commits costs the
+ * same however long the history is. Within the commit graph the walk follows
+ * parent positions and reads no objects; it only reads commit objects until
+ * it reaches a commit the graph has. Failures to read a commit are thrown as
+ * {@link UncheckedIOException}.
+ */
+public class CommitIterator implements Iterator<String> {
+    private final CommitGraph graph = CommitGraph.load();
+    private String next;
+    private String last;
+    // Graph positions of next and last, or -1 if not in the graph
+    private int nextPosition;
+    private int lastPosition = -1;
+
+    /**
+     * @param start Commit to start from, or null for an empty history
+     */
+    public CommitIterator(String start) {
+        this.next = start == null || start.isEmpty() ? null : start;
+        this.nextPosition = find(next);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && last != null) {
+            if (lastPosition >= 0) {
+                nextPosition = graph.firstParentAt(lastPosition);
+                next = nextPosition < 0 ? null : graph.hashAt(nextPosition);
+            } else {
+                try {
+                    next = ObjectStore.readParentHash(last);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                nextPosition = find(next);
+            }
+            last = null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = next;
+        lastPosition = nextPosition;
+        next = null;
+        return last;
+    }
+
+    private int find(String hash) {
+        return graph == null || hash == null ? -1 : graph.find(hash);
+    }
+}
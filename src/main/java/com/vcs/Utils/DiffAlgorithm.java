@@ -0,0 +1,41 @@
+package com.vcs.Utils;
+
+import java.util.List;
+
+/**
+ * Line diff algorithms selectable with {@code --diff-algorithm}.
+ *
+ * Each computes edits between two sequences of interned line IDs; they only
+ * differ in which of several equally short (or nearly equally short) scripts
+ * they pick and how fast they get there.
+ */
+public enum DiffAlgorithm {
+    /** Shortest edit script; can pair up unrelated braces and blank lines */
+    MYERS {
+        @Override
+        public List<Edit> diff(int[] a, int[] b) {
+            return MyersDiff.diff(a, b);
+        }
+    },
+    /** Anchors on lines that occur exactly once on each side */
+    PATIENCE {
+        @Override
+        public List<Edit> diff(int[] a, int[] b) {
+            return PatienceDiff.diff(a, b);
+        }
+    },
+    /** Anchors on the rarest common lines; fast on files with many repeats */
+    HISTOGRAM {
+        @Override
+        public List<Edit> diff(int[] a, int[] b) {
+            return HistogramDiff.diff(a, b);
+        }
+    };
+
+    /**
+     * @param a Line IDs of the old side
+     * @param b Line IDs of the new side
+     * @return Edits in order
+     */
+    public abstract List<Edit> diff(int[] a, int[] b);
+}
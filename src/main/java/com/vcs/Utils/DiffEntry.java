@@ -0,0 +1,78 @@
+package com.vcs.Utils;
+
+/**
+ * One changed path between two versions of the tree.
+ *
+ * Additions have no old side and deletions no new side. A rename or copy
+ * joins an old path to a different new path, with a similarity score from 0
+ * to 100; the score of every other change is 0.
+ */
+public class DiffEntry {
+    public static final String DIRECTORY_MODE = "040000";
+
+    public enum ChangeType {
+        ADD('A'), DELETE('D'), MODIFY('M'), RENAME('R'), COPY('C');
+
+        private final char code;
+
+        ChangeType(char code) {
+            this.code = code;
+        }
+
+        /**
+         * @return The one-letter status code
+         */
+        public char getCode() {
+            return code;
+        }
+    }
+
+    public final ChangeType changeType;
+    public final String oldPath;
+    public final String oldHash;
+    public final String oldMode;
+    public final String newPath;
+    public final String newHash;
+    public final String newMode;
+    public final int score;
+
+    DiffEntry(ChangeType changeType, String oldPath, String oldHash, String oldMode, String newPath, String newHash,
+            String newMode, int score) {
+        this.changeType = changeType;
+        this.oldPath = oldPath;
+        this.oldHash = oldHash;
+        this.oldMode = oldMode;
+        this.newPath = newPath;
+        this.newHash = newHash;
+        this.newMode = newMode;
+        this.score = score;
+    }
+
+    public static DiffEntry add(String path, String hash, String mode) {
+        return new DiffEntry(ChangeType.ADD, null, null, null, path, hash, mode, 0);
+    }
+
+    public static DiffEntry delete(String path, String hash, String mode) {
+        return new DiffEntry(ChangeType.DELETE, path, hash, mode, null, null, null, 0);
+    }
+
+    public static DiffEntry modify(String path, String oldHash, String oldMode, String newHash, String newMode) {
+        return new DiffEntry(ChangeType.MODIFY, path, oldHash, oldMode, path, newHash, newMode, 0);
+    }
+
+    /**
+     * @return The new path, or the old one for a deletion; entries are
+     *         reported in this order
+     */
+    public String getPath() {
+        return newPath != null ? newPath : oldPath;
+    }
+
+    /**
+     * @return true if either side is a collapsed sparse directory rather than
+     *         a file
+     */
+    public boolean isDirectory() {
+        return DIRECTORY_MODE.equals(oldMode) || DIRECTORY_MODE.equals(newMode);
+    }
+}
@@ -0,0 +1,165 @@
+package com.vcs.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One side of a file diff: a stored blob or a working tree file, read as a
+ * stream so that nothing has to be loaded whole before the diff decides how
+ * to handle it.
+ *
+ * A side is binary if the first {@value #SAMPLE_SIZE} bytes contain a NUL, or
+ * if more than one in 128 of them are control characters other than the
+ * usual whitespace, backspace and escape. Only that sample is read, so a
+ * large binary blob is never fully inflated.
+ */
+public abstract class DiffSource {
+    static final int SAMPLE_SIZE = 8000;
+
+    private Boolean binary;
+    private long size = -1;
+    private byte[] content;
+
+    /**
+     * @return A new stream over the content; the caller closes it
+     * @throws IOException If the content cannot be read
+     */
+    public abstract InputStream open() throws IOException;
+
+    /**
+     * @return Size of the content in bytes
+     * @throws IOException If the size cannot be read
+     */
+    protected abstract long readSize() throws IOException;
+
+    /**
+     * @return A side without content, for the missing side of an addition or
+     *         deletion
+     */
+    public static DiffSource empty() {
+        return new DiffSource() {
+            @Override
+            public InputStream open() {
+                return InputStream.nullInputStream();
+            }
+
+            @Override
+            protected long readSize() {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * @param hash Hash of a blob in the object store
+     */
+    public static DiffSource blob(String hash) {
+        return new DiffSource() {
+            @Override
+            public InputStream open() throws IOException {
+                return new BufferedInputStream(ObjectStore.openContent(hash));
+            }
+
+            @Override
+            protected long readSize() throws IOException {
+                return ObjectStore.readSize(hash);
+            }
+        };
+    }
+
+    /**
+     * @param file File in the working tree
+     */
+    public static DiffSource file(Path file) {
+        return new DiffSource() {
+            @Override
+            public InputStream open() throws IOException {
+                return new BufferedInputStream(Files.newInputStream(file));
+            }
+
+            @Override
+            protected long readSize() throws IOException {
+                return Files.size(file);
+            }
+        };
+    }
+
+    /**
+     * @return Size of the content in bytes, read once
+     * @throws IOException If the size cannot be read
+     */
+    public long size() throws IOException {
+        if (size < 0) {
+            size = content != null ? content.length : readSize();
+        }
+        return size;
+    }
+
+    /**
+     * Reads the whole content. It is kept, so later calls and the binary
+     * check do not read it again.
+     *
+     * @return The whole content
+     * @throws IOException If the content cannot be read
+     */
+    public byte[] readAll() throws IOException {
+        if (content == null) {
+            try (InputStream in = open()) {
+                content = in.readAllBytes();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Checks the leading bytes for binary content. The result is cached.
+     *
+     * @return true if the leading bytes look binary
+     * @throws IOException If the content cannot be read
+     */
+    public boolean isBinary() throws IOException {
+        if (binary == null && content != null) {
+            binary = isBinary(content, Math.min(content.length, SAMPLE_SIZE));
+        } else if (binary == null) {
+            byte[] sample;
+            try (InputStream in = open()) {
+                sample = in.readNBytes(SAMPLE_SIZE);
+            }
+            binary = isBinary(sample, sample.length);
+        }
+        return binary;
+    }
+
+    static boolean isBinary(byte[] buffer, int length) {
+        int printable = 0;
+        int nonPrintable = 0;
+        for (int i = 0; i < length; i++) {
+            int c = buffer[i] & 0xff;
+            if (c == 0) {
+                return true;
+            }
+            if (c == 0x7f) {
+                nonPrintable++;
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\t':
+                    case '\n':
+                    case '\r':
+                    case '\f':
+                    case '\b':
+                    case 0x1b:
+                        printable++;
+                        break;
+                    default:
+                        nonPrintable++;
+                }
+            } else {
+                printable++;
+            }
+        }
+        return (printable >> 7) < nonPrintable;
+    }
+}
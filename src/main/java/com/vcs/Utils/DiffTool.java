@@ -1,24 +1,117 @@
 package com.vcs.Utils;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.zip.InflaterInputStream;
 
 import com.vcs.Commands.CreateBlob;
 
 public class DiffTool {
-    private static final String OBJECTS_DIR = ".vcs/objects/";
-    private static final String HEAD_FILE = ".vcs/HEAD";
+    private static final int STAT_GRAPH_WIDTH = 50;
+    private static final long DEFAULT_BIG_FILE_THRESHOLD = 16 * 1024 * 1024;
+    private static final int LARGE_FILE_WINDOW_LINES = 16384;
     private final StagingArea stage;
+    private int contextLines = 3;
+    private DiffAlgorithm algorithm = DiffAlgorithm.HISTOGRAM;
+    private long bigFileThreshold = DEFAULT_BIG_FILE_THRESHOLD;
+    private RenameDetector renameDetector = new RenameDetector(RenameDetector.DEFAULT_SCORE, false,
+            RenameDetector.DEFAULT_CANDIDATE_LIMIT);
+    private OutputFormat outputFormat = OutputFormat.PATCH;
+
+    /**
+     * What is printed for each changed file.
+     */
+    public enum OutputFormat {
+        /** Unified hunks */
+        PATCH,
+        /** A histogram of changed lines per file, then the totals */
+        STAT,
+        /** Inserted and deleted line counts per file, tab separated */
+        NUMSTAT,
+        /** Changed paths only */
+        NAME_ONLY,
+        /** Changed paths with their status letter */
+        NAME_STATUS;
+
+        /**
+         * @return true if the format needs nothing but paths and blob hashes
+         */
+        boolean namesOnly() {
+            return this == NAME_ONLY || this == NAME_STATUS;
+        }
+    }
+
+    /**
+     * Changed line counts collected for --stat, printed once all are known
+     * so the columns line up.
+     */
+    private static class DiffStat {
+        private final List<String> names = new ArrayList<>();
+        // Inserted and deleted lines, null for binary files
+        private final List<int[]> counts = new ArrayList<>();
+
+        void add(String name, int[] count) {
+            names.add(name);
+            counts.add(count);
+        }
+
+        void print(PrintStream out) {
+            if (names.isEmpty()) {
+                return;
+            }
+
+            int nameWidth = 0;
+            int maxChanges = 0;
+            int insertions = 0;
+            int deletions = 0;
+            for (int i = 0; i < names.size(); i++) {
+                nameWidth = Math.max(nameWidth, names.get(i).length());
+                int[] count = counts.get(i);
+                if (count != null) {
+                    maxChanges = Math.max(maxChanges, count[0] + count[1]);
+                    insertions += count[0];
+                    deletions += count[1];
+                }
+            }
+            int countWidth = Math.max(3, String.valueOf(maxChanges).length());
+
+            for (int i = 0; i < names.size(); i++) {
+                int[] count = counts.get(i);
+                String name = String.format("%-" + nameWidth + "s", names.get(i));
+                if (count == null) {
+                    out.println(" " + name + " | " + String.format("%" + countWidth + "s", "Bin"));
+                    continue;
+                }
+                String graph = "+".repeat(scale(count[0], maxChanges)) + "-".repeat(scale(count[1], maxChanges));
+                out.println(" " + name + " | " + String.format("%" + countWidth + "d", count[0] + count[1])
+                        + (graph.isEmpty() ? "" : " " + graph));
+            }
+
+            StringBuilder summary = new StringBuilder(" " + names.size() + (names.size() == 1 ? " file" : " files")
+                    + " changed");
+            if (insertions > 0 || deletions == 0) {
+                summary.append(", ").append(insertions).append(insertions == 1 ? " insertion(+)" : " insertions(+)");
+            }
+            if (deletions > 0 || insertions == 0) {
+                summary.append(", ").append(deletions).append(deletions == 1 ? " deletion(-)" : " deletions(-)");
+            }
+            out.println(summary);
+        }
+
+        // Shrink a bar to the graph width, keeping every change visible
+        private static int scale(int changes, int maxChanges) {
+            if (changes == 0 || maxChanges <= STAT_GRAPH_WIDTH) {
+                return changes;
+            }
+            return Math.max(1, (int) ((long) changes * STAT_GRAPH_WIDTH / maxChanges));
+        }
+    }
 
     public DiffTool(StagingArea stage) {
         this.stage = stage;
@@ -28,218 +121,306 @@ public class DiffTool {
         this.stage = new StagingArea();
     }
 
+    /**
+     * @param contextLines Unchanged lines shown around each change
+     */
+    public void setContextLines(int contextLines) {
+        this.contextLines = contextLines;
+    }
+
+    /**
+     * @param algorithm Algorithm used for file diffs
+     */
+    public void setAlgorithm(DiffAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @param bigFileThreshold Size in bytes above which text files are diffed
+     *                         as streams instead of in memory
+     */
+    public void setBigFileThreshold(long bigFileThreshold) {
+        this.bigFileThreshold = bigFileThreshold;
+    }
+
+    /**
+     * @param renameDetector Detector pairing added files with deleted or
+     *                       modified ones, or null to report every file
+     *                       under its own path
+     */
+    public void setRenameDetector(RenameDetector renameDetector) {
+        this.renameDetector = renameDetector;
+    }
+
+    /**
+     * @param outputFormat What to print for each changed file
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
     // Diff between working directory and staged files
-    public void diffWorkingDirectory(StagingArea stagingArea) throws IOException, NoSuchAlgorithmException {
-        System.out.println("Changes in working directory:");
-
-        // Get all files in current directory
-        List<Path> allFiles = Files.walk(Paths.get("."))
-                .filter(Files::isRegularFile)
-                .filter(path -> !path.toString().startsWith("./.vcs"))
-                .filter(path -> !path.toString().startsWith("./.git"))
-                .filter(path -> !path.toString().startsWith("./target"))
-                .collect(Collectors.toList());
-
-        for (Path file : allFiles) {
-            String filePath = file.toString();
-
-            // Check if file is in staging area
-            String stagedHash = stagingArea.getStagedFiles().get(filePath.substring(2));
-
-            if (stagedHash == null) {
-                // Unstaged new file
-                System.out.println("  + (new) " + filePath);
-            } else {
-                // Compare current file with staged version
-                String currentHash = CreateBlob.hashObject(Files.readAllBytes(file), false);
-                if (!currentHash.equals(stagedHash)) {
-                    System.out.println("  * (modified) " + filePath);
-                    printFileDiff(file, getFileContentFromHash(stagedHash));
-                }
-            }
+    public void diffWorkingDirectory(StagingArea stagingArea, Pathspec pathspec)
+            throws IOException, NoSuchAlgorithmException {
+        if (outputFormat == OutputFormat.PATCH) {
+            System.out.println("Changes in working directory:");
         }
 
-        // Check for staged files that no longer exist
-        stagingArea.getStagedFiles().keySet().forEach(stagedFilePath -> {
-            if (!Files.exists(Paths.get(stagedFilePath))) {
-                System.out.println("  - (deleted) " + stagedFilePath);
-            }
-        });
+        // Stream over the index and the working tree; with a file system
+        // monitor running only the paths changed since the last scan are read
+        DiffStat stat = new DiffStat();
+        try (WorkingTreeScanner workingTree = new WorkingTreeScanner(new IgnoreManager(),
+                stagingArea.getSparseCheckout(), 0);
+                OrderedOutput output = new OrderedOutput(System.out, 0)) {
+            new TreeWalker(stagingArea, null, false, workingTree, pathspec).walk(change -> {
+                if (change.isUntracked()) {
+                    // Unstaged new file
+                    printEntry(DiffEntry.add(change.path, change.workingHash, null), true, output, stat);
+                } else if (change.workingStatus() == 'M') {
+                    // Compare current file with staged version, on a worker
+                    // while the walk goes on
+                    printEntry(DiffEntry.modify(change.path, change.indexHash, change.indexMode, change.workingHash,
+                            change.indexMode), true, output, stat);
+                } else if (change.workingStatus() == 'D') {
+                    printEntry(DiffEntry.delete(change.path, change.indexHash, change.indexMode), true, output, stat);
+                }
+                return true;
+            });
+            output.flush();
+        }
+        stat.print(System.out);
     }
 
     // Diff between staged files and last commit
-    public void diffStagedVsLastCommit(StagingArea stagingArea) throws IOException {
-        System.out.println("Changes to be committed:");
-
-        // Get last commit
-        String lastCommitHash = getLastCommitHash();
-        if (lastCommitHash == null) {
-            // No previous commit, all staged files are new
-            stagingArea.getStagedFiles().forEach((path, hash) -> System.out.println("  + (new) " + path));
-            return;
+    public void diffStagedVsLastCommit(StagingArea stagingArea, Pathspec pathspec) throws IOException {
+        if (outputFormat == OutputFormat.PATCH) {
+            System.out.println("Changes to be committed:");
         }
 
-        // Get tree from last commit
-        Map<String, String> lastCommitTree = getTreeFromCommit(lastCommitHash);
-
-        // Compare staged files with last commit
-        stagingArea.getStagedFiles().forEach((path, hash) -> {
-            String lastCommitFileHash = lastCommitTree.get(path);
-
-            if (lastCommitFileHash == null) {
-                // New file in staging
-                System.out.println("  + (new) " + path);
-            } else if (!hash.equals(lastCommitFileHash)) {
-                // Modified file
-                System.out.println("  * (modified) " + path);
-                try {
-                    printFileDiff(
-                            getFileContentFromHash(lastCommitFileHash),
-                            getFileContentFromHash(hash));
-                } catch (IOException e) {
-                    System.err.println("Error reading file contents: " + e.getMessage());
-                }
+        // Directories whose tree ID matches the cache-tree are skipped unread
+        List<DiffEntry> entries = new ArrayList<>();
+        new TreeWalker(stagingArea, ObjectStore.readHeadTree(), true, null, pathspec).walk(change -> {
+            if (change.indexStatus() == 'A') {
+                entries.add(DiffEntry.add(change.path, change.indexHash, change.indexMode));
+            } else if (change.indexStatus() == 'D') {
+                entries.add(DiffEntry.delete(change.path, change.treeHash, change.treeMode));
+            } else if (change.indexStatus() == 'M') {
+                entries.add(DiffEntry.modify(change.path, change.treeHash, change.treeMode, change.indexHash,
+                        change.indexMode));
             }
+            return true;
         });
+        printEntries(entries);
     }
 
     // Diff between two commits
-    public void diffCommits(String commit1Hash, String commit2Hash) throws IOException {
-        System.out.println("Diff between commits " + commit1Hash + " and " + commit2Hash);
-
-        // Get trees from both commits
-        Map<String, String> tree1 = getTreeFromCommit(commit1Hash);
-        Map<String, String> tree2 = getTreeFromCommit(commit2Hash);
-
-        // Find files in first commit
-        tree1.forEach((path, hash) -> {
-            String hash2 = tree2.get(path);
-
-            if (hash2 == null) {
-                // File deleted in second commit
-                System.out.println("  - (deleted) " + path);
-            } else if (!hash.equals(hash2)) {
-                // File modified
-                System.out.println("  * (modified) " + path);
-                try {
-                    printFileDiff(
-                            getFileContentFromHash(hash),
-                            getFileContentFromHash(hash2));
-                } catch (IOException e) {
-                    System.err.println("Error reading file contents: " + e.getMessage());
-                }
-            }
-        });
+    public void diffCommits(String commit1Hash, String commit2Hash, Pathspec pathspec) throws IOException {
+        if (outputFormat == OutputFormat.PATCH) {
+            System.out.println("Diff between commits " + commit1Hash + " and " + commit2Hash);
+        }
 
-        // Find new files in second commit
-        tree2.forEach((path, hash) -> {
-            if (!tree1.containsKey(path)) {
-                System.out.println("  + (new) " + path);
-            }
-        });
+        // Only subtrees whose IDs differ are read
+        List<DiffEntry> entries = new TreeDiff(pathspec).diff(ObjectStore.readTreeHashFromCommit(commit1Hash),
+                ObjectStore.readTreeHashFromCommit(commit2Hash));
+        printEntries(entries);
     }
 
-    // Utility method to hash file contents
-    private String hashFile(Path filePath) throws IOException, NoSuchAlgorithmException {
-        return Files.exists(filePath) ? CreateBlob.hashObject(Files.readAllBytes(filePath), false).toString() : null;
-    }
+    // Pair up renames and copies, then print each change in path order; the
+    // name formats pair identical blobs only, so no blob is ever read
+    private void printEntries(List<DiffEntry> entries) throws IOException {
+        if (renameDetector != null) {
+            entries = renameDetector.detect(entries, !outputFormat.namesOnly());
+        }
 
-    // Get last commit hash from HEAD
-    private String getLastCommitHash() throws IOException {
-        Path headPath = Paths.get(HEAD_FILE);
-        return Files.exists(headPath) ? new String(Files.readAllBytes(headPath)).trim() : null;
+        // File diffs are computed in parallel and printed in path order
+        DiffStat stat = new DiffStat();
+        try (OrderedOutput output = new OrderedOutput(System.out, 0)) {
+            for (DiffEntry entry : entries) {
+                printEntry(entry, false, output, stat);
+            }
+            output.flush();
+        }
+        stat.print(System.out);
     }
 
-    // Extract tree from commit object
-    private Map<String, String> getTreeFromCommit(String commitHash) throws IOException {
-        Map<String, String> treeFiles = new HashMap<>();
-
-        // Read commit object
-        Path commitPath = Paths.get(OBJECTS_DIR + commitHash.substring(0, 2), commitHash.substring(2));
-        List<String> commitLines = Files.readAllLines(commitPath);
-
-        // Find tree hash
-        String treeHash = commitLines.stream()
-                .filter(line -> line.startsWith("tree "))
-                .findFirst()
-                .map(line -> line.substring(5))
-                .orElseThrow(() -> new IOException("No tree found in commit"));
-
-        // Read tree object
-        Path treePath = Paths.get(OBJECTS_DIR, treeHash);
-        List<String> treeEntries = Files.readAllLines(treePath);
-
-        // Parse tree entries
-        for (String entry : treeEntries) {
-            String[] parts = entry.split(" ");
-            if (parts.length == 3) {
-                // parts[1] is path, parts[2] is hash
-                treeFiles.put(parts[1], parts[2]);
-            }
+    /**
+     * Queues the output for one change in the selected format.
+     *
+     * @param workingTree true if the new side is the working tree file
+     *                    rather than a blob
+     * @param stat        Table collecting the counts for --stat
+     */
+    private void printEntry(DiffEntry entry, boolean workingTree, OrderedOutput output, DiffStat stat)
+            throws IOException {
+        String name = entry.oldPath != null && entry.newPath != null && !entry.oldPath.equals(entry.newPath)
+                ? entry.oldPath + " => " + entry.newPath
+                : entry.getPath();
+        boolean sameContent = entry.oldHash != null && entry.oldHash.equals(entry.newHash);
+
+        switch (outputFormat) {
+            case NAME_ONLY:
+                output.println(entry.getPath());
+                return;
+            case NAME_STATUS:
+                String status = String.valueOf(entry.changeType.getCode());
+                if (entry.score > 0) {
+                    output.println(status + String.format("%03d", entry.score) + "\t" + entry.oldPath + "\t"
+                            + entry.newPath);
+                } else {
+                    output.println(status + "\t" + entry.getPath());
+                }
+                return;
+            case STAT:
+            case NUMSTAT:
+                if (entry.isDirectory()) {
+                    return;
+                }
+                // Only the edits are computed, never the hunk text
+                output.submit(() -> {
+                    int[] counts = sameContent ? new int[2]
+                            : countLines(oldSource(entry), newSource(entry, workingTree));
+                    if (outputFormat == OutputFormat.STAT) {
+                        return out -> stat.add(name, counts);
+                    }
+                    return out -> out.println(counts == null ? "-\t-\t" + name
+                            : counts[0] + "\t" + counts[1] + "\t" + name);
+                });
+                return;
+            default:
+                break;
         }
 
-        return treeFiles;
+        String filePath = workingTree ? "./" + entry.getPath() : entry.getPath();
+        switch (entry.changeType) {
+            case ADD:
+                output.println("  + (new) " + filePath);
+                break;
+            case DELETE:
+                output.println("  - (deleted) " + entry.oldPath);
+                break;
+            case MODIFY:
+                String header = "  * (modified) " + filePath;
+                if (entry.isDirectory() || sameContent) {
+                    output.println(header);
+                } else {
+                    output.submit(() -> renderFileDiff(header, oldSource(entry), newSource(entry, workingTree)));
+                }
+                break;
+            case RENAME:
+            case COPY:
+                String label = entry.changeType == DiffEntry.ChangeType.RENAME ? "renamed" : "copied";
+                String pairHeader = "  > (" + label + ") " + entry.oldPath + " -> " + entry.newPath + " ("
+                        + entry.score + "%)";
+                if (sameContent) {
+                    output.println(pairHeader);
+                } else {
+                    output.submit(() -> renderFileDiff(pairHeader, oldSource(entry), newSource(entry, workingTree)));
+                }
+                break;
+        }
     }
 
-    // Get file contents from object hash
-    private List<String> getFileContentFromHash(String hash) throws IOException {
-        // Construct the file path
-        List<String> fileContent = new ArrayList<>();
-        String dirName = ".vcs/objects/" + hash.substring(0, 2);
-        String fileName = hash.substring(2);
-        File objectFile = new File(dirName, fileName);
-
-        ///
-        /// // Read and decompress the file
-        byte[] decompressedContent = decompressFile(objectFile);
+    private static DiffSource oldSource(DiffEntry entry) {
+        return entry.oldHash == null ? DiffSource.empty() : DiffSource.blob(entry.oldHash);
+    }
 
-        byte[] content = extractContent(decompressedContent);
+    private static DiffSource newSource(DiffEntry entry, boolean workingTree) {
+        if (entry.newPath == null) {
+            return DiffSource.empty();
+        }
+        return workingTree ? DiffSource.file(Paths.get(entry.newPath)) : DiffSource.blob(entry.newHash);
+    }
 
-        for (String line : new String(content).split("\n")) {
-            fileContent.add(line);
+    // Count inserted and deleted lines from the edits alone; null for
+    // binary files
+    private int[] countLines(DiffSource oldSource, DiffSource newSource) throws IOException {
+        if (oldSource.isBinary() || newSource.isBinary()) {
+            return null;
+        }
+        boolean inMemory = loadIfSmall(oldSource, newSource);
+        List<Edit> edits;
+        if (!inMemory) {
+            edits = new LargeFileDiff(contextLines, algorithm, LARGE_FILE_WINDOW_LINES).edits(oldSource, newSource);
+        } else {
+            edits = new UnifiedDiff(contextLines, algorithm).edits(splitLines(oldSource.readAll()),
+                    splitLines(newSource.readAll()));
         }
 
-        return fileContent;
+        int[] counts = new int[2];
+        for (Edit edit : edits) {
+            counts[0] += edit.getInserted();
+            counts[1] += edit.getDeleted();
+        }
+        return counts;
     }
 
-    private byte[] extractContent(byte[] decompressedContent) {
-        int nullIndex = 0;
-        while (nullIndex < decompressedContent.length && decompressedContent[nullIndex] != 0) {
-            nullIndex++;
+    // Read both sides of a text diff whole if they are small enough to diff
+    // in memory; binary files are decided from their sample first and never
+    // read whole
+    private boolean loadIfSmall(DiffSource oldSource, DiffSource newSource) throws IOException {
+        if (Math.max(oldSource.size(), newSource.size()) > bigFileThreshold) {
+            return false;
         }
-
-        byte[] content = new byte[decompressedContent.length - nullIndex - 1];
-        System.arraycopy(decompressedContent, nullIndex + 1, content, 0, content.length);
-        return content;
+        oldSource.readAll();
+        newSource.readAll();
+        return true;
     }
 
-    private byte[] decompressFile(File objectFile) throws IOException {
-        try (InflaterInputStream inflater = new InflaterInputStream(Files.newInputStream(objectFile.toPath()))) {
-            return inflater.readAllBytes();
+    // Render a change's header and file diff into a buffer on a worker
+    // thread; diffs of files too large to buffer are streamed when their
+    // turn to print comes
+    private OrderedOutput.Output renderFileDiff(String header, DiffSource oldSource, DiffSource newSource)
+            throws IOException {
+        if (Math.max(oldSource.size(), newSource.size()) > bigFileThreshold && !oldSource.isBinary()
+                && !newSource.isBinary()) {
+            return out -> {
+                out.println(header);
+                printFileDiff(oldSource, newSource, out);
+            };
         }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer);
+        out.println(header);
+        printFileDiff(oldSource, newSource, out);
+        out.flush();
+        byte[] rendered = buffer.toByteArray();
+        return target -> target.write(rendered);
     }
 
-    // Print diff between two file contents
-    private void printFileDiff(Path file1, List<String> content2) throws IOException {
-        printFileDiff(Files.readAllLines(file1), content2);
+    // Utility method to hash file contents
+    private String hashFile(Path filePath) throws IOException, NoSuchAlgorithmException {
+        return Files.exists(filePath) ? CreateBlob.hashObject(Files.readAllBytes(filePath), false).toString() : null;
     }
 
-    private void printFileDiff(List<String> content1, List<String> content2) {
-        // Simple line-by-line diff
-        int maxLines = Math.max(content1.size(), content2.size());
+    // Split content into lines; a trailing newline does not start another line
+    private List<String> splitLines(byte[] content) {
+        List<String> lines = new ArrayList<>(List.of(new String(content).split("\n", -1)));
+        if (lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
 
-        for (int i = 0; i < maxLines; i++) {
-            String line1 = i < content1.size() ? content1.get(i) : null;
-            String line2 = i < content2.size() ? content2.get(i) : null;
+    // Print diff between two versions of a file, deciding from their size and
+    // leading bytes how to compare them
+    private void printFileDiff(DiffSource oldSource, DiffSource newSource, PrintStream out) throws IOException {
+        if (oldSource.isBinary() || newSource.isBinary()) {
+            out.println("Binary files differ");
+            return;
+        }
+        if (!loadIfSmall(oldSource, newSource)) {
+            new LargeFileDiff(contextLines, algorithm, LARGE_FILE_WINDOW_LINES).print(oldSource, newSource, out);
+            return;
+        }
+        printFileDiff(splitLines(oldSource.readAll()), splitLines(newSource.readAll()), out);
+    }
 
-            if (line1 == null) {
-                System.out.println("+ " + line2); // Added line
-            } else if (line2 == null) {
-                System.out.println("- " + line1); // Removed line
-            } else if (!line1.equals(line2)) {
-                System.out.println("- " + line1); // Changed line
-                System.out.println("+ " + line2);
-            }
+    private void printFileDiff(List<String> content1, List<String> content2, PrintStream out) {
+        // Unified hunks from old (content1) to new (content2)
+        for (UnifiedDiff.Hunk hunk : new UnifiedDiff(contextLines, algorithm).hunks(content1, content2)) {
+            out.println(hunk.getHeader());
+            hunk.lines.forEach(out::println);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.vcs.Utils;
+
+/**
+ * A region where two sequences of lines differ: lines
+ * {@code [beginA, endA)} of the old side are replaced by lines
+ * {@code [beginB, endB)} of the new side. An empty old range is an insertion
+ * and an empty new range a deletion.
+ */
+public class Edit {
+    public final int beginA;
+    public final int endA;
+    public final int beginB;
+    public final int endB;
+
+    public Edit(int beginA, int endA, int beginB, int endB) {
+        this.beginA = beginA;
+        this.endA = endA;
+        this.beginB = beginB;
+        this.endB = endB;
+    }
+
+    /**
+     * @return Number of lines removed from the old side
+     */
+    public int getDeleted() {
+        return endA - beginA;
+    }
+
+    /**
+     * @return Number of lines added on the new side
+     */
+    public int getInserted() {
+        return endB - beginB;
+    }
+
+    @Override
+    public String toString() {
+        return "Edit[" + beginA + "-" + endA + "," + beginB + "-" + endB + "]";
+    }
+}
@@ -0,0 +1,328 @@
+package com.vcs.Utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Long-running file watcher that records which working-tree paths changed.
+ *
+ * The daemon appends every changed path to {@code .vcs/fsmonitor/journal}.
+ * Clients hold a token of the form {@code <instance>:<offset>} and ask for
+ * the paths recorded after it. Before reading, a client drops a cookie file
+ * into the monitor directory and waits for the daemon to journal it, so every
+ * change made before the query is guaranteed to be seen. Lines starting with
+ * '!' (event overflow, ignore or sparse-checkout rule changes) tell clients
+ * to fall back to a full scan.
+ */
+public class FileSystemMonitor {
+    private static final Path MONITOR_DIR = Paths.get(".vcs", "fsmonitor");
+    private static final Path JOURNAL_FILE = MONITOR_DIR.resolve("journal");
+    private static final Path DAEMON_FILE = MONITOR_DIR.resolve("daemon");
+    private static final Path COOKIE_DIR = MONITOR_DIR.resolve("cookies");
+    private static final Path VCS_DIR = Paths.get(".vcs");
+    private static final Path INFO_DIR = VCS_DIR.resolve("info");
+    private static final String IGNORE_FILE = ".vcsignore";
+
+    private static final String RESET_MARKER = "!reset";
+    private static final String OVERFLOW_MARKER = "!overflow";
+    private static final String COOKIE_PREFIX = "#";
+
+    private static final long COOKIE_TIMEOUT_MS = 1000;
+    private static final long COOKIE_POLL_MS = 2;
+
+    private final Path projectRoot = Paths.get(System.getProperty("user.dir")).toAbsolutePath().normalize();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final IgnoreManager ignore = new IgnoreManager();
+    private WatchService watchService;
+    private BufferedWriter journal;
+
+    /**
+     * Paths reported by the daemon since a token.
+     */
+    public static class Changes {
+        /** Token to pass to the next query */
+        public final String token;
+        /** Changed paths relative to the project root, or null if a full scan is needed */
+        public final Set<String> paths;
+
+        Changes(String token, Set<String> paths) {
+            this.token = token;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * Checks whether a daemon is running for this repository.
+     *
+     * @return Process ID of the daemon, or -1 if none is running
+     */
+    public static long runningDaemon() {
+        try {
+            if (!Files.exists(DAEMON_FILE)) {
+                return -1;
+            }
+            long pid = Long.parseLong(Files.readString(DAEMON_FILE).trim().split(" ")[0]);
+            return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false) ? pid : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Asks the running daemon which paths changed since a token.
+     *
+     * @param token Token returned by an earlier query, or null
+     * @return The changes, with {@code paths} set to null when the token is
+     *         unknown or events were lost; null if no daemon answered
+     */
+    public static Changes query(String token) {
+        if (runningDaemon() < 0) {
+            return null;
+        }
+
+        try {
+            String instance = Files.readString(DAEMON_FILE).trim().split(" ")[1];
+
+            // Synchronize with the daemon so changes made before now are journaled
+            String cookie = ProcessHandle.current().pid() + "-" + System.nanoTime();
+            Path cookieFile = COOKIE_DIR.resolve(cookie);
+            Files.createFile(cookieFile);
+            try {
+                long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT_MS;
+                while (System.currentTimeMillis() < deadline) {
+                    Changes changes = readJournal(instance, token, cookie);
+                    if (changes != null) {
+                        return changes;
+                    }
+                    Thread.sleep(COOKIE_POLL_MS);
+                }
+                return null;
+            } finally {
+                Files.deleteIfExists(cookieFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the journal up to a cookie line.
+     *
+     * @return The changes, or null if the cookie has not been journaled yet
+     */
+    private static Changes readJournal(String instance, String token, String cookie) throws IOException {
+        long offset = 0;
+        boolean known = false;
+        if (token != null && token.startsWith(instance + ":")) {
+            offset = Long.parseLong(token.substring(instance.length() + 1));
+            known = true;
+        }
+
+        byte[] bytes;
+        try (RandomAccessFile file = new RandomAccessFile(JOURNAL_FILE.toFile(), "r")) {
+            if (offset > file.length()) {
+                return new Changes(instance + ":" + file.length(), null);
+            }
+            file.seek(offset);
+            bytes = new byte[(int) (file.length() - offset)];
+            file.readFully(bytes);
+        }
+
+        Set<String> paths = new HashSet<>();
+        boolean fullScan = !known;
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+
+            if (line.equals(COOKIE_PREFIX + cookie)) {
+                return new Changes(instance + ":" + (offset + start), fullScan ? null : paths);
+            } else if (line.startsWith("!")) {
+                fullScan = true;
+            } else if (!line.startsWith(COOKIE_PREFIX)) {
+                paths.add(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the daemon until the process is stopped.
+     *
+     * @throws IOException If the watcher cannot be set up
+     */
+    public void run() throws IOException {
+        long running = runningDaemon();
+        if (running >= 0) {
+            throw new IOException("File system monitor already running (pid " + running + ")");
+        }
+
+        Files.createDirectories(COOKIE_DIR);
+        watchService = FileSystems.getDefault().newWatchService();
+        journal = Files.newBufferedWriter(JOURNAL_FILE, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        register(projectRoot.resolve(COOKIE_DIR));
+        register(projectRoot.resolve(VCS_DIR));
+        if (Files.isDirectory(INFO_DIR)) {
+            register(projectRoot.resolve(INFO_DIR));
+        }
+        registerTree(projectRoot);
+
+        // A new instance ID invalidates tokens handed out by earlier daemons
+        String instance = Long.toHexString(System.currentTimeMillis());
+        Files.writeString(DAEMON_FILE, ProcessHandle.current().pid() + " " + instance + "\n");
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+        System.out.println("Watching " + watchedDirectories.size() + " directories");
+
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                List<String> lines = new ArrayList<>();
+                // Drain everything already queued so a burst becomes one write
+                while (key != null) {
+                    handleEvents(key, lines);
+                    key = watchService.poll();
+                }
+                for (String line : lines) {
+                    journal.write(line);
+                    journal.write('\n');
+                }
+                journal.flush();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleEvents(WatchKey key, List<String> lines) throws IOException {
+        Path directory = watchedDirectories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                lines.add(OVERFLOW_MARKER);
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            Path relativePath = projectRoot.relativize(path);
+
+            if (relativePath.startsWith(COOKIE_DIR)) {
+                if (event.kind() == ENTRY_CREATE) {
+                    lines.add(COOKIE_PREFIX + path.getFileName());
+                }
+            } else if (relativePath.startsWith(INFO_DIR)) {
+                // Sparse-checkout rules changed which paths are scanned
+                lines.add(RESET_MARKER);
+                if (relativePath.equals(INFO_DIR) && event.kind() == ENTRY_CREATE) {
+                    register(path);
+                }
+            } else if (relativePath.startsWith(VCS_DIR)) {
+                // Object and index writes are not part of the working tree
+                continue;
+            } else if (relativePath.getFileName().toString().equals(IGNORE_FILE)) {
+                // Any .vcsignore may change which paths under it are scanned;
+                // directories it stops ignoring need watching
+                lines.add(RESET_MARKER);
+                ignore.refreshIgnorePatterns();
+                registerTree(path.getParent());
+            } else if (!isHidden(relativePath)) {
+                boolean isDirectory = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+                if (isDirectory && event.kind() == ENTRY_MODIFY) {
+                    // Changes inside a directory are reported for its entries
+                    continue;
+                }
+                if (isDirectory && event.kind() == ENTRY_CREATE) {
+                    registerTree(path);
+                }
+                lines.add(relativePath.toString());
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // Hidden and ignored directories are never scanned, so their
+                // events are not needed
+                Path relativeDir = projectRoot.relativize(dir);
+                if (!dir.equals(projectRoot) && (isHidden(relativeDir)
+                        || ignore.isIgnored(relativeDir.toString().replace(File.separatorChar, '/'), true))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+    }
+
+    private void shutdown() {
+        try {
+            watchService.close();
+            journal.close();
+            Files.deleteIfExists(DAEMON_FILE);
+        } catch (IOException e) {
+            System.err.println("Error stopping file system monitor: " + e.getMessage());
+        }
+    }
+
+    private static boolean isHidden(Path relativePath) {
+        for (Path part : relativePath) {
+            if (part.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
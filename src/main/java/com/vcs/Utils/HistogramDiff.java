@@ -0,0 +1,78 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Histogram diff, an extension of patience diff: instead of requiring
+ * unique lines, it anchors on the common block whose rarest line occurs the
+ * fewest times in the old side of the region, preferring longer blocks on a
+ * tie, then diffs the regions before and after it. Lines repeated more than
+ * {@value #MAX_CHAIN} times (braces, blank lines) are never used as anchors,
+ * which keeps the search linear on files full of them.
+ */
+public class HistogramDiff extends AnchoredDiff {
+    private static final int MAX_CHAIN = 64;
+
+    private HistogramDiff(int[] a, int[] b) {
+        super(a, b);
+    }
+
+    /**
+     * @param a Line IDs of the old side
+     * @param b Line IDs of the new side
+     * @return Edits in order
+     */
+    public static List<Edit> diff(int[] a, int[] b) {
+        return new HistogramDiff(a, b).run();
+    }
+
+    @Override
+    protected List<Match> anchors(int beginA, int endA, int beginB, int endB) {
+        // Old-side positions of every line in the region
+        Map<Integer, List<Integer>> positions = new HashMap<>();
+        for (int i = beginA; i < endA; i++) {
+            positions.computeIfAbsent(a[i], id -> new ArrayList<>()).add(i);
+        }
+
+        Match best = null;
+        int bestCount = MAX_CHAIN;
+        int j = beginB;
+        while (j < endB) {
+            List<Integer> candidates = positions.get(b[j]);
+            int nextJ = j + 1;
+            if (candidates != null && candidates.size() <= bestCount) {
+                for (int i : candidates) {
+                    // Grow the block around (i, j), tracking its rarest line
+                    int startA = i;
+                    int startB = j;
+                    int count = candidates.size();
+                    while (startA > beginA && startB > beginB && a[startA - 1] == b[startB - 1]) {
+                        startA--;
+                        startB--;
+                        count = Math.min(count, positions.get(a[startA]).size());
+                    }
+                    int stopA = i + 1;
+                    int stopB = j + 1;
+                    while (stopA < endA && stopB < endB && a[stopA] == b[stopB]) {
+                        count = Math.min(count, positions.get(a[stopA]).size());
+                        stopA++;
+                        stopB++;
+                    }
+
+                    if (best == null || count < bestCount || (count == bestCount && stopA - startA > best.length)) {
+                        best = new Match(startA, startB, stopA - startA);
+                        bestCount = count;
+                    }
+                    nextJ = Math.max(nextJ, stopB);
+                }
+            }
+            j = nextJ;
+        }
+
+        return best == null ? Collections.emptyList() : List.of(best);
+    }
+}
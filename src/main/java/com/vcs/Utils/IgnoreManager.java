@@ -4,26 +4,45 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.util.HashSet;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Decides which working-tree paths are ignored.
+ *
+ * The root .vcsignore applies to the whole tree, and a .vcsignore in a
+ * subdirectory applies to that subdirectory only, taking precedence over the
+ * files above it. Nested files are loaded the first time a path below their
+ * directory is checked. Once a directory is ignored, nothing below it can be
+ * re-included, so walkers skip ignored directories without reading them.
+ */
 public class IgnoreManager {
-    private Set<PathMatcher> ignoredPatterns;
+    private static final String IGNORE_FILE = ".vcsignore";
+
+    private IgnoreMatcher matcher;
     private Path rootPath;
+    private final Map<String, Optional<IgnoreMatcher>> nestedMatchers = new ConcurrentHashMap<>();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
 
     /**
      * Constructs an IgnoreManager that dynamically uses the current working
      * directory
      */
     public IgnoreManager() {
-        // Dynamically get the current working directory at runtime
+        // The working directory is resolved once; refreshIgnorePatterns picks
+        // up a new one
         this.rootPath = getCurrentWorkingDirectory();
-        this.ignoredPatterns = new HashSet<>();
+        this.matcher = new IgnoreMatcher();
         loadIgnoreFile();
     }
 
@@ -52,37 +71,26 @@ public class IgnoreManager {
         this.rootPath = getCurrentWorkingDirectory();
 
         // Clear existing patterns
-        this.ignoredPatterns.clear();
+        this.matcher = new IgnoreMatcher();
+        nestedMatchers.clear();
+        fingerprints.clear();
 
         // Reload ignore file
         loadIgnoreFile();
     }
 
     /**
-     * Adds a single ignore pattern to the set of ignored patterns.
-     * Converts the pattern to a PathMatcher for efficient matching.
+     * Adds a single ignore pattern after the loaded ones.
+     * The pattern is compiled once into the matcher.
      * 
-     * @param pattern The pattern to ignore (e.g., "*.log", "target/", ".git")
+     * @param pattern The pattern to ignore (e.g., "*.log", "target/", "/build/")
      */
     public void addIgnorePattern(String pattern) {
         if (pattern == null || pattern.trim().isEmpty()) {
             return;
         }
-
-        // Trim and ignore comments and empty lines
-        pattern = pattern.trim();
-        if (pattern.startsWith("#") || pattern.isEmpty()) {
-            return;
-        }
-
-        // Convert glob pattern to PathMatcher
-        try {
-            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
-            ignoredPatterns.add(matcher);
-        } catch (Exception e) {
-            // Log or handle pattern conversion errors
-            System.err.println("Invalid ignore pattern: " + pattern);
-        }
+        matcher.add(pattern);
+        fingerprints.clear();
     }
 
     /**
@@ -93,22 +101,112 @@ public class IgnoreManager {
      */
     public boolean isIgnored(Path file) {
         // Ensure we have an absolute, normalized path
-        file = file.toAbsolutePath().normalize();
-
-        // Refresh the root path to ensure it's current
-        rootPath = getCurrentWorkingDirectory();
+        Path absolutePath = file.toAbsolutePath().normalize();
 
         // Check if the file is within the root path
-        if (!file.startsWith(rootPath)) {
+        if (!absolutePath.startsWith(rootPath) || absolutePath.equals(rootPath)) {
             return false;
         }
 
-        // Create relative path from root
-        Path relativePath = rootPath.relativize(file);
+        String relativePath = rootPath.relativize(absolutePath).toString().replace(File.separatorChar, '/');
+        return isIgnored(relativePath, Files.isDirectory(absolutePath));
+    }
+
+    /**
+     * Checks a path relative to the root without touching the file system,
+     * for walkers that already know whether the entry is a directory. An
+     * ignored directory can be skipped without descending into it.
+     * 
+     * @param relativePath Path relative to the root, with "/" separators
+     * @param directory    true if the path is a directory
+     * @return true if the path should be ignored
+     */
+    public boolean isIgnored(String relativePath, boolean directory) {
+        // A path is ignored if it or any of its parent directories is
+        int slash = relativePath.indexOf('/');
+        while (slash >= 0) {
+            if (isExcluded(relativePath.substring(0, slash), true)) {
+                return true;
+            }
+            slash = relativePath.indexOf('/', slash + 1);
+        }
+        return isExcluded(relativePath, directory);
+    }
+
+    /**
+     * Identifies the ignore rules that apply to the entries of a directory:
+     * those of its own .vcsignore and of every .vcsignore above it. Listings
+     * filtered under the same rules share the same fingerprint.
+     * 
+     * @param directory Directory relative to the root, "" for the root
+     * @return A hash of the rules in effect
+     */
+    public String getRulesFingerprint(String directory) {
+        String fingerprint = fingerprints.get(directory);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+
+        IgnoreMatcher own = directory.isEmpty() ? matcher : nestedMatcher(directory);
+        String parent = "";
+        if (!directory.isEmpty()) {
+            int slash = directory.lastIndexOf('/');
+            parent = getRulesFingerprint(slash < 0 ? "" : directory.substring(0, slash));
+        }
+        if (own == null) {
+            fingerprint = parent;
+        } else {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                digest.update((parent + "\0" + directory + "\0").getBytes(StandardCharsets.UTF_8));
+                digest.update(String.join("\n", own.getPatterns()).getBytes(StandardCharsets.UTF_8));
+                fingerprint = HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        fingerprints.put(directory, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Checks a single path against the .vcsignore files above it; the deepest
+     * file with a matching pattern decides.
+     */
+    private boolean isExcluded(String path, boolean directory) {
+        int slash = path.lastIndexOf('/');
+        while (slash >= 0) {
+            IgnoreMatcher nested = nestedMatcher(path.substring(0, slash));
+            if (nested != null) {
+                Boolean result = nested.match(path.substring(slash + 1), directory);
+                if (result != null) {
+                    return result;
+                }
+            }
+            slash = path.lastIndexOf('/', slash - 1);
+        }
+        return Boolean.TRUE.equals(matcher.match(path, directory));
+    }
+
+    /**
+     * @return The patterns of a subdirectory's .vcsignore, or null if it has
+     *         none
+     */
+    private IgnoreMatcher nestedMatcher(String directory) {
+        return nestedMatchers.computeIfAbsent(directory, key -> {
+            Path ignoreFile = rootPath.resolve(key).resolve(IGNORE_FILE);
+            if (!Files.isRegularFile(ignoreFile)) {
+                return Optional.empty();
+            }
 
-        // Check against all patterns
-        return ignoredPatterns.stream()
-                .anyMatch(matcher -> matcher.matches(relativePath));
+            IgnoreMatcher nested = new IgnoreMatcher();
+            try {
+                Files.readAllLines(ignoreFile).forEach(nested::add);
+            } catch (IOException e) {
+                System.err.println("Error reading " + key + "/" + IGNORE_FILE + ": " + e.getMessage());
+            }
+            return Optional.of(nested);
+        }).orElse(null);
     }
 
     /**
@@ -116,11 +214,11 @@ public class IgnoreManager {
      * directory.
      */
     public void loadIgnoreFile() {
-        File ignoreFile = new File(rootPath.toFile(), ".vcsignore");
+        File ignoreFile = new File(rootPath.toFile(), IGNORE_FILE);
 
-        // If ignore file doesn't exist, just return
+        // If ignore file doesn't exist, just return; having none is normal and
+        // must not leak into machine-readable output
         if (!ignoreFile.exists()) {
-            System.out.println("No .vcsignore file found in " + rootPath);
             return;
         }
 
@@ -140,16 +238,16 @@ public class IgnoreManager {
      * @return Set of ignore pattern strings
      */
     public Set<String> getIgnorePatterns() {
-        return ignoredPatterns.stream()
-                .map(PathMatcher::toString)
-                .collect(Collectors.toSet());
+        return new LinkedHashSet<>(matcher.getPatterns());
     }
 
     /**
      * Clear all existing ignore patterns.
      */
     public void clearIgnorePatterns() {
-        ignoredPatterns.clear();
+        matcher = new IgnoreMatcher();
+        nestedMatchers.clear();
+        fingerprints.clear();
     }
 
     /**
@@ -158,6 +256,6 @@ public class IgnoreManager {
      * @return The current working directory path
      */
     public Path getRootPath() {
-        return getCurrentWorkingDirectory();
+        return rootPath;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,251 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The patterns of one ignore file, compiled once for fast lookups.
+ *
+ * Patterns follow gitignore rules. A trailing "/" matches directories only, a
+ * leading "!" re-includes paths, and a pattern with a slash anywhere but at
+ * the end is anchored to the directory of the ignore file, while one without
+ * matches a name at any depth. When several patterns match, the last one
+ * wins.
+ *
+ * Most patterns never reach a glob. Exact names are looked up in a hash map,
+ * {@code *.ext} patterns by the extensions of the name, and anchored literal
+ * paths such as {@code /build/} or {@code target/**} in a trie of path
+ * components. Only the remaining patterns are matched as regular expressions.
+ */
+public class IgnoreMatcher {
+    private final Map<String, List<Rule>> names = new HashMap<>();
+    private final Map<String, List<Rule>> extensions = new HashMap<>();
+    private final TrieNode paths = new TrieNode();
+    private final List<Rule> nameGlobs = new ArrayList<>();
+    private final List<Rule> pathGlobs = new ArrayList<>();
+    private final List<String> patterns = new ArrayList<>();
+
+    private static class Rule {
+        final int order;
+        final boolean negated;
+        final boolean directoryOnly;
+        final Pattern glob;
+
+        Rule(int order, boolean negated, boolean directoryOnly, Pattern glob) {
+            this.order = order;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.glob = glob;
+        }
+    }
+
+    private static class TrieNode {
+        final Map<String, TrieNode> children = new HashMap<>();
+        // Rules matching the node's path itself
+        final List<Rule> self = new ArrayList<>();
+        // "path/**" rules matching everything below the node
+        final List<Rule> contents = new ArrayList<>();
+    }
+
+    /**
+     * Compiles a pattern and adds it after the existing ones.
+     *
+     * @param pattern A line of an ignore file; blank lines and comments are
+     *                skipped
+     */
+    public void add(String pattern) {
+        String line = pattern.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+
+        boolean negated = line.startsWith("!");
+        if (negated || line.startsWith("\\!") || line.startsWith("\\#")) {
+            line = line.substring(1);
+        }
+        boolean directoryOnly = line.endsWith("/");
+        while (line.endsWith("/")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        boolean anchored = line.contains("/");
+        while (line.startsWith("/")) {
+            line = line.substring(1);
+        }
+        if (line.isEmpty()) {
+            return;
+        }
+        patterns.add(pattern.trim());
+
+        int order = patterns.size();
+        if (!anchored) {
+            if (!hasWildcard(line)) {
+                names.computeIfAbsent(line, key -> new ArrayList<>())
+                        .add(new Rule(order, negated, directoryOnly, null));
+            } else if (line.startsWith("*.") && !hasWildcard(line.substring(1))) {
+                extensions.computeIfAbsent(line.substring(1), key -> new ArrayList<>())
+                        .add(new Rule(order, negated, directoryOnly, null));
+            } else {
+                nameGlobs.add(new Rule(order, negated, directoryOnly, compileGlob(line)));
+            }
+            return;
+        }
+
+        if (line.endsWith("/**") && !hasWildcard(line.substring(0, line.length() - 3))) {
+            trieNode(line.substring(0, line.length() - 3)).contents
+                    .add(new Rule(order, negated, directoryOnly, null));
+        } else if (!hasWildcard(line)) {
+            trieNode(line).self.add(new Rule(order, negated, directoryOnly, null));
+        } else {
+            pathGlobs.add(new Rule(order, negated, directoryOnly, compileGlob(line)));
+        }
+    }
+
+    /**
+     * Finds the last pattern matching a path. Parent directories are not
+     * checked; a path inside an ignored directory is only ignored here if a
+     * pattern matches the path itself.
+     *
+     * @param path      Path relative to the ignore file's directory, with "/"
+     *                  separators
+     * @param directory true if the path is a directory
+     * @return true if the path is ignored, false if a "!" pattern re-includes
+     *         it, null if no pattern matches
+     */
+    public Boolean match(String path, boolean directory) {
+        if (patterns.isEmpty()) {
+            return null;
+        }
+
+        // Walk the trie along the parent directories, collecting "dir/**" rules
+        TrieNode node = paths;
+        Rule contents = null;
+        int start = 0;
+        int slash;
+        while ((slash = path.indexOf('/', start)) >= 0) {
+            node = node == null ? null : node.children.get(path.substring(start, slash));
+            if (node != null) {
+                contents = latest(contents, node.contents, true);
+            }
+            start = slash + 1;
+        }
+        String name = path.substring(start);
+        node = node == null ? null : node.children.get(name);
+
+        Rule rule = match(path, name, directory, node, contents);
+        return rule == null ? null : !rule.negated;
+    }
+
+    /**
+     * @return The patterns in the order they were added
+     */
+    public List<String> getPatterns() {
+        return new ArrayList<>(patterns);
+    }
+
+    /**
+     * Finds the last rule matching one path.
+     *
+     * @param path      Full path relative to the ignore file's directory
+     * @param name      Last component of the path
+     * @param directory true if the path is a directory
+     * @param node      Trie node of the path, or null if it has none
+     * @param contents  Last "dir/**" rule covering a parent directory
+     */
+    private Rule match(String path, String name, boolean directory, TrieNode node, Rule contents) {
+        Rule best = contents;
+        best = latest(best, names.get(name), directory);
+        for (int dot = name.indexOf('.'); dot >= 0; dot = name.indexOf('.', dot + 1)) {
+            best = latest(best, extensions.get(name.substring(dot)), directory);
+        }
+        if (node != null) {
+            best = latest(best, node.self, directory);
+        }
+        for (Rule rule : nameGlobs) {
+            if (isLater(rule, best, directory) && rule.glob.matcher(name).matches()) {
+                best = rule;
+            }
+        }
+        for (Rule rule : pathGlobs) {
+            if (isLater(rule, best, directory) && rule.glob.matcher(path).matches()) {
+                best = rule;
+            }
+        }
+        return best;
+    }
+
+    private static Rule latest(Rule best, List<Rule> rules, boolean directory) {
+        if (rules != null) {
+            for (Rule rule : rules) {
+                if (isLater(rule, best, directory)) {
+                    best = rule;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isLater(Rule rule, Rule best, boolean directory) {
+        return (directory || !rule.directoryOnly) && (best == null || rule.order > best.order);
+    }
+
+    private TrieNode trieNode(String path) {
+        TrieNode node = paths;
+        for (String name : path.split("/")) {
+            node = node.children.computeIfAbsent(name, key -> new TrieNode());
+        }
+        return node;
+    }
+
+    private static boolean hasWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Translates a glob to a regular expression: "*" and "?" stop at "/",
+     * "**" crosses directories and "[...]" is a character class.
+     */
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 3;
+            } else if (glob.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end + 1;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                i += 2;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
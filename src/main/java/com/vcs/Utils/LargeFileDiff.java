@@ -0,0 +1,300 @@
+package com.vcs.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diffs files too large to hold as line lists, reading both sides as streams.
+ *
+ * The first pass keeps a window of at most a fixed number of lines from each
+ * side and diffs the windows. The windows are then cut at the last point
+ * within their first halves where both sides are aligned, meaning the lines
+ * before it are fully accounted for by the edits before it. Those edits are
+ * kept, the lines before the cut are dropped and the windows are refilled.
+ * If the windows share no aligned point, both halves are recorded as one
+ * replacement. Only the edits, a few integers each, outlive their window.
+ *
+ * The second pass reads both sides again from the start and prints the hunks
+ * as it reaches them, so a hunk is never held in memory either. The result
+ * can be larger than a whole-file diff where a change spans a window cut,
+ * but the output is always a correct diff.
+ */
+public class LargeFileDiff {
+    private final UnifiedDiff diff;
+    private final int contextLines;
+    private final int windowLines;
+
+    /**
+     * @param contextLines Unchanged lines shown around each change
+     * @param algorithm    Algorithm diffing each window
+     * @param windowLines  Lines of each side held at a time, at least 2
+     */
+    public LargeFileDiff(int contextLines, DiffAlgorithm algorithm, int windowLines) {
+        this.contextLines = Math.max(0, contextLines);
+        this.diff = new UnifiedDiff(this.contextLines, algorithm);
+        this.windowLines = Math.max(2, windowLines);
+    }
+
+    /**
+     * Computes the edits from the old side to the new side, reading each
+     * side once.
+     *
+     * @param oldSource Old version
+     * @param newSource New version
+     * @return Edits in order
+     * @throws IOException If either side cannot be read
+     */
+    public List<Edit> edits(DiffSource oldSource, DiffSource newSource) throws IOException {
+        List<Edit> edits = new ArrayList<>();
+        try (LineReader oldReader = new LineReader(oldSource.open());
+                LineReader newReader = new LineReader(newSource.open())) {
+            findEdits(oldReader, newReader, edits);
+        }
+        return edits;
+    }
+
+    /**
+     * Prints the unified hunks from the old side to the new side.
+     *
+     * @param oldSource Old version
+     * @param newSource New version
+     * @param out       Stream receiving the hunks
+     * @throws IOException If either side cannot be read
+     */
+    public void print(DiffSource oldSource, DiffSource newSource, PrintStream out) throws IOException {
+        List<Edit> edits = new ArrayList<>();
+        int oldLines;
+        try (LineReader oldReader = new LineReader(oldSource.open());
+                LineReader newReader = new LineReader(newSource.open())) {
+            oldLines = findEdits(oldReader, newReader, edits);
+        }
+        if (edits.isEmpty()) {
+            return;
+        }
+
+        try (LineReader oldReader = new LineReader(oldSource.open());
+                LineReader newReader = new LineReader(newSource.open())) {
+            for (int[] group : UnifiedDiff.group(edits, contextLines)) {
+                Edit first = edits.get(group[0]);
+                Edit last = edits.get(group[1]);
+                int oldStart = Math.max(0, first.beginA - contextLines);
+                int oldEnd = Math.min(oldLines, last.endA + contextLines);
+                int newStart = first.beginB - (first.beginA - oldStart);
+                int newEnd = last.endB + (oldEnd - last.endA);
+                out.println(new UnifiedDiff.Hunk(oldStart, oldEnd - oldStart, newStart, newEnd - newStart, List.of())
+                        .getHeader());
+
+                oldReader.skipTo(oldStart);
+                newReader.skipTo(newStart);
+                for (int i = group[0]; i <= group[1]; i++) {
+                    Edit edit = edits.get(i);
+                    printContext(oldReader, newReader, edit.beginA, out);
+                    while (oldReader.getLine() < edit.endA) {
+                        out.println("-" + oldReader.next());
+                    }
+                    while (newReader.getLine() < edit.endB) {
+                        out.println("+" + newReader.next());
+                    }
+                }
+                printContext(oldReader, newReader, oldEnd, out);
+            }
+        }
+    }
+
+    /**
+     * Runs the first pass.
+     *
+     * @param edits Receives the edits, with positions in the whole files
+     * @return Number of lines on the old side
+     */
+    private int findEdits(LineReader oldReader, LineReader newReader, List<Edit> edits) throws IOException {
+        List<String> oldWindow = new ArrayList<>();
+        List<String> newWindow = new ArrayList<>();
+        int oldOffset = 0;
+        int newOffset = 0;
+
+        while (true) {
+            boolean oldDone = fill(oldReader, oldWindow);
+            boolean newDone = fill(newReader, newWindow);
+            List<Edit> windowEdits = diff.edits(oldWindow, newWindow);
+
+            if (oldDone && newDone) {
+                for (Edit edit : windowEdits) {
+                    addEdit(edits, edit, oldOffset, newOffset);
+                }
+                return oldOffset + oldWindow.size();
+            }
+
+            int limitA = oldWindow.size() / 2;
+            int limitB = newWindow.size() / 2;
+            int[] cut = alignedCut(windowEdits, oldWindow.size(), newWindow.size(), limitA, limitB);
+            if (cut[0] + cut[1] == 0) {
+                // Nothing in common early enough; replace both halves outright
+                cut = new int[] { limitA, limitB };
+                addEdit(edits, new Edit(0, limitA, 0, limitB), oldOffset, newOffset);
+            } else {
+                for (Edit edit : windowEdits) {
+                    if (edit.beginA >= cut[0] && edit.beginB >= cut[1]) {
+                        break;
+                    }
+                    addEdit(edits, edit, oldOffset, newOffset);
+                }
+            }
+
+            oldWindow.subList(0, cut[0]).clear();
+            newWindow.subList(0, cut[1]).clear();
+            oldOffset += cut[0];
+            newOffset += cut[1];
+        }
+    }
+
+    /**
+     * Finds the furthest point on an unchanged run of lines that lies within
+     * the limits on both sides.
+     *
+     * @return Positions in the old and new windows, {0, 0} if there is none
+     *         further than the start
+     */
+    private static int[] alignedCut(List<Edit> edits, int sizeA, int sizeB, int limitA, int limitB) {
+        int[] best = { 0, 0 };
+        int runA = 0;
+        int runB = 0;
+        for (int i = 0; i <= edits.size(); i++) {
+            int runEnd = i < edits.size() ? edits.get(i).beginA : sizeA;
+            int length = Math.min(runEnd - runA, Math.min(limitA - runA, limitB - runB));
+            if (length < 0) {
+                break;
+            }
+            best = new int[] { runA + length, runB + length };
+            if (i < edits.size()) {
+                runA = edits.get(i).endA;
+                runB = edits.get(i).endB;
+            }
+        }
+        return best;
+    }
+
+    private static void addEdit(List<Edit> edits, Edit edit, int oldOffset, int newOffset) {
+        int beginA = edit.beginA + oldOffset;
+        int beginB = edit.beginB + newOffset;
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.endA == beginA && last.endB == beginB) {
+                edits.set(edits.size() - 1, new Edit(last.beginA, edit.endA + oldOffset, last.beginB,
+                        edit.endB + newOffset));
+                return;
+            }
+        }
+        edits.add(new Edit(beginA, edit.endA + oldOffset, beginB, edit.endB + newOffset));
+    }
+
+    /**
+     * Tops a window up to its size.
+     *
+     * @return true if the side has no lines left to read
+     */
+    private boolean fill(LineReader reader, List<String> window) throws IOException {
+        while (window.size() < windowLines) {
+            String line = reader.next();
+            if (line == null) {
+                return true;
+            }
+            window.add(line);
+        }
+        return reader.atEnd();
+    }
+
+    private static void printContext(LineReader oldReader, LineReader newReader, int end, PrintStream out)
+            throws IOException {
+        while (oldReader.getLine() < end) {
+            out.println(" " + oldReader.next());
+            newReader.next();
+        }
+    }
+
+    /**
+     * Splits a stream at "\n" the way the in-memory diff splits content: a
+     * trailing newline does not start another line.
+     */
+    private static class LineReader implements AutoCloseable {
+        private final InputStream in;
+        private final byte[] buffer = new byte[65536];
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+        private int position;
+        private int limit;
+        private int line;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return Index of the next line to be read
+         */
+        int getLine() {
+            return line;
+        }
+
+        /**
+         * @return The next line without its newline, or null at the end
+         */
+        String next() throws IOException {
+            if (atEnd()) {
+                return null;
+            }
+
+            partial.reset();
+            while (true) {
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                if (position < limit) {
+                    // Found the newline; most lines never need the partial buffer
+                    String text = partial.size() == 0 ? new String(buffer, start, position - start)
+                            : append(start, position);
+                    position++;
+                    line++;
+                    return text;
+                }
+                partial.write(buffer, start, position - start);
+                if (atEnd()) {
+                    line++;
+                    return partial.toString();
+                }
+            }
+        }
+
+        private String append(int start, int end) {
+            partial.write(buffer, start, end - start);
+            return partial.toString();
+        }
+
+        boolean atEnd() throws IOException {
+            while (position == limit) {
+                int read = in.read(buffer);
+                if (read < 0) {
+                    return true;
+                }
+                position = 0;
+                limit = read;
+            }
+            return false;
+        }
+
+        void skipTo(int target) throws IOException {
+            while (line < target && next() != null) {
+                // Lines between hunks are not needed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
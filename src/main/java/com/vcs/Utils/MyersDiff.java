@@ -0,0 +1,280 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Myers' O(ND) difference algorithm over interned line IDs.
+ *
+ * Lines are compared as integers, so each comparison is a single instruction
+ * regardless of line length. The implementation is the linear-space
+ * refinement: it searches forward and backward at once for the middle snake
+ * of an optimal edit path, then recurses on the halves on either side of it.
+ * Memory stays proportional to the length of the inputs instead of D times
+ * that, which matters for long files with many differences. Common prefixes
+ * and suffixes are stripped before every search.
+ *
+ * Two measures keep the running time bounded on inputs that differ a lot.
+ * First, lines that occur on only one side can never be matched, so they
+ * are left out of the search, and the result maps back to the full input.
+ * Second, each search gives up after a cost limit that grows with the square
+ * root of the input size. It then splits at the furthest point reached, so
+ * the script stays correct but may not be the shortest.
+ */
+public class MyersDiff {
+    private static final int MIN_COST_LIMIT = 256;
+
+    private final int[] a;
+    private final int[] b;
+    private final int costLimit;
+    private final List<Edit> edits = new ArrayList<>();
+
+    private MyersDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+        this.costLimit = Math.max(MIN_COST_LIMIT, (int) Math.sqrt(a.length + b.length));
+    }
+
+    /**
+     * Computes a shortest edit script.
+     *
+     * @param a Line IDs of the old side
+     * @param b Line IDs of the new side
+     * @return Edits in order, with adjacent edits merged
+     */
+    public static List<Edit> diff(int[] a, int[] b) {
+        // Search only the lines that occur on both sides
+        int maxId = 0;
+        for (int id : a) {
+            maxId = Math.max(maxId, id);
+        }
+        for (int id : b) {
+            maxId = Math.max(maxId, id);
+        }
+        boolean[] inA = new boolean[maxId + 1];
+        boolean[] inB = new boolean[maxId + 1];
+        for (int id : a) {
+            inA[id] = true;
+        }
+        for (int id : b) {
+            inB[id] = true;
+        }
+        int[] indexA = shared(a, inB);
+        int[] indexB = shared(b, inA);
+
+        MyersDiff diff = new MyersDiff(select(a, indexA), select(b, indexB));
+        diff.diff(0, indexA.length, 0, indexB.length);
+
+        // Lines left between the matched ones are the edits of the full input
+        MyersDiff result = new MyersDiff(a, b);
+        int reducedA = 0;
+        int reducedB = 0;
+        int matchedA = 0;
+        int matchedB = 0;
+        for (Edit edit : diff.edits) {
+            for (; reducedA < edit.beginA; reducedA++, reducedB++) {
+                result.addGap(matchedA, indexA[reducedA], matchedB, indexB[reducedB]);
+                matchedA = indexA[reducedA] + 1;
+                matchedB = indexB[reducedB] + 1;
+            }
+            reducedA = edit.endA;
+            reducedB = edit.endB;
+        }
+        for (; reducedA < indexA.length; reducedA++, reducedB++) {
+            result.addGap(matchedA, indexA[reducedA], matchedB, indexB[reducedB]);
+            matchedA = indexA[reducedA] + 1;
+            matchedB = indexB[reducedB] + 1;
+        }
+        result.addGap(matchedA, a.length, matchedB, b.length);
+        return result.edits;
+    }
+
+    /**
+     * Computes a shortest edit script for part of two sequences.
+     *
+     * @return Edits in order, with positions in the full sequences
+     */
+    public static List<Edit> diff(int[] a, int beginA, int endA, int[] b, int beginB, int endB) {
+        List<Edit> edits = new ArrayList<>();
+        for (Edit edit : diff(Arrays.copyOfRange(a, beginA, endA), Arrays.copyOfRange(b, beginB, endB))) {
+            edits.add(new Edit(edit.beginA + beginA, edit.endA + beginA, edit.beginB + beginB, edit.endB + beginB));
+        }
+        return edits;
+    }
+
+    private static int[] shared(int[] lines, boolean[] inOther) {
+        int count = 0;
+        int[] indexes = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (inOther[lines[i]]) {
+                indexes[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    private static int[] select(int[] lines, int[] indexes) {
+        int[] selected = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            selected[i] = lines[indexes[i]];
+        }
+        return selected;
+    }
+
+    private void addGap(int beginA, int endA, int beginB, int endB) {
+        if (beginA < endA || beginB < endB) {
+            addEdit(beginA, endA, beginB, endB);
+        }
+    }
+
+    private void diff(int beginA, int endA, int beginB, int endB) {
+        while (beginA < endA && beginB < endB && a[beginA] == b[beginB]) {
+            beginA++;
+            beginB++;
+        }
+        while (beginA < endA && beginB < endB && a[endA - 1] == b[endB - 1]) {
+            endA--;
+            endB--;
+        }
+
+        if (beginA == endA || beginB == endB) {
+            if (beginA < endA || beginB < endB) {
+                addEdit(beginA, endA, beginB, endB);
+            }
+            return;
+        }
+
+        // After trimming both sides start and end with a difference, so the
+        // middle snake splits them into two strictly smaller problems
+        int[] split = middleSnake(beginA, endA, beginB, endB);
+        if (split == null) {
+            addEdit(beginA, endA, beginB, endB);
+            return;
+        }
+        diff(beginA, split[0], beginB, split[1]);
+        diff(split[0], endA, split[1], endB);
+    }
+
+    /**
+     * Runs the forward and backward searches until their paths overlap.
+     *
+     * @return Offsets in a and b of a point on an optimal path near its
+     *         middle, or null if the ranges have no line in common
+     */
+    private int[] middleSnake(int beginA, int endA, int beginB, int endB) {
+        int n = endA - beginA;
+        int m = endB - beginB;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD + 1;
+        int length = 2 * maxD + 2;
+
+        // Furthest x reached on each diagonal k = x - y, forward and backward
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        int delta = n - m;
+        // With an odd delta the forward path is the one to detect the overlap
+        boolean oddDelta = (delta & 1) != 0;
+        int forwardStart = 0;
+        int forwardEnd = 0;
+        int backwardStart = 0;
+        int backwardEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            if (d > costLimit) {
+                return furthestForward(forward, offset, d, n, m, beginA, beginB);
+            }
+
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                        ? forward[index + 1]
+                        : forward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[beginA + x] == b[beginB + y]) {
+                    x++;
+                    y++;
+                }
+                forward[index] = x;
+
+                if (x > n) {
+                    // Ran off the right edge
+                    forwardEnd += 2;
+                } else if (y > m) {
+                    // Ran off the bottom edge
+                    forwardStart += 2;
+                } else if (oddDelta) {
+                    int backwardIndex = offset + delta - k;
+                    if (backwardIndex >= 0 && backwardIndex < length && backward[backwardIndex] != -1
+                            && x >= n - backward[backwardIndex]) {
+                        return new int[] { beginA + x, beginB + y };
+                    }
+                }
+            }
+
+            for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                        ? backward[index + 1]
+                        : backward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[endA - x - 1] == b[endB - y - 1]) {
+                    x++;
+                    y++;
+                }
+                backward[index] = x;
+
+                if (x > n) {
+                    backwardEnd += 2;
+                } else if (y > m) {
+                    backwardStart += 2;
+                } else if (!oddDelta) {
+                    int forwardIndex = offset + delta - k;
+                    if (forwardIndex >= 0 && forwardIndex < length && forward[forwardIndex] != -1) {
+                        int forwardX = forward[forwardIndex];
+                        int forwardY = forwardX - (forwardIndex - offset);
+                        if (forwardX >= n - x) {
+                            return new int[] { beginA + forwardX, beginB + forwardY };
+                        }
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Picks the forward path that got furthest when the search is too
+     * expensive to finish.
+     */
+    private static int[] furthestForward(int[] forward, int offset, int d, int n, int m, int beginA, int beginB) {
+        int bestX = -1;
+        int bestY = -1;
+        for (int k = -d + 1; k <= d - 1; k += 2) {
+            int x = forward[offset + k];
+            int y = x - k;
+            if (x >= 0 && x <= n && y >= 0 && y <= m && x + y > bestX + bestY && x + y < n + m) {
+                bestX = x;
+                bestY = y;
+            }
+        }
+        return bestX + bestY > 0 ? new int[] { beginA + bestX, beginB + bestY } : null;
+    }
+
+    private void addEdit(int beginA, int endA, int beginB, int endB) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.endA == beginA && last.endB == beginB) {
+                edits.set(edits.size() - 1, new Edit(last.beginA, endA, last.beginB, endB));
+                return;
+            }
+        }
+        edits.add(new Edit(beginA, endA, beginB, endB));
+    }
+}
@@ -0,0 +1,329 @@
+package com.vcs.Utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import com.vcs.Commands.ReadTree;
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+
+/**
+ * Read access to the loose objects and refs stored under {@code .vcs}.
+ */
+public class ObjectStore {
+    private static final String OBJECTS_DIR = ".vcs/objects";
+    private static final String HEAD_FILE = ".vcs/HEAD";
+
+    private ObjectStore() {
+    }
+
+    /**
+     * Returns the file backing a loose object.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return Path of the compressed object file
+     */
+    public static Path objectPath(String hash) {
+        return Paths.get(OBJECTS_DIR, hash.substring(0, 2), hash.substring(2));
+    }
+
+    /**
+     * Checks whether an object is present in the object store.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return true if the object file exists
+     */
+    public static boolean exists(String hash) {
+        return Files.exists(objectPath(hash));
+    }
+
+    /**
+     * Reads and inflates an object, returning its content without the
+     * {@code "<type> <size>\0"} header.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return Raw object content
+     * @throws IOException If the object is missing or cannot be inflated
+     */
+    public static byte[] readContent(String hash) throws IOException {
+        File objectFile = objectPath(hash).toFile();
+        if (!objectFile.exists()) {
+            throw new IOException("Object not found: " + hash);
+        }
+        return extractContent(decompressFile(objectFile));
+    }
+
+    /**
+     * Reads the type of an object by inflating only its header.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return Object type, e.g. "blob", "tree" or "commit"
+     * @throws IOException If the object is missing or cannot be inflated
+     */
+    public static String readType(String hash) throws IOException {
+        File objectFile = objectPath(hash).toFile();
+        if (!objectFile.exists()) {
+            throw new IOException("Object not found: " + hash);
+        }
+
+        StringBuilder type = new StringBuilder();
+        try (InflaterInputStream inflater = new InflaterInputStream(Files.newInputStream(objectFile.toPath()))) {
+            int b;
+            while ((b = inflater.read()) != -1 && b != ' ') {
+                type.append((char) b);
+            }
+        }
+        return type.toString();
+    }
+
+    /**
+     * Reads the content size recorded in an object's header, inflating only
+     * the header.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return Size of the content in bytes
+     * @throws IOException If the object is missing or its header is malformed
+     */
+    public static long readSize(String hash) throws IOException {
+        try (InflaterInputStream inflater = openObject(hash)) {
+            String header = readHeader(inflater, hash);
+            try {
+                return Long.parseLong(header.substring(header.indexOf(' ') + 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed object header: " + hash);
+            }
+        }
+    }
+
+    /**
+     * Opens an object for streaming, positioned after its
+     * {@code "<type> <size>\0"} header, so large objects never need to be
+     * inflated whole.
+     *
+     * @param hash SHA-1 hash of the object
+     * @return Stream of the object's content; the caller closes it
+     * @throws IOException If the object is missing or its header is malformed
+     */
+    public static InputStream openContent(String hash) throws IOException {
+        InflaterInputStream inflater = openObject(hash);
+        try {
+            readHeader(inflater, hash);
+            return inflater;
+        } catch (IOException e) {
+            inflater.close();
+            throw e;
+        }
+    }
+
+    private static InflaterInputStream openObject(String hash) throws IOException {
+        File objectFile = objectPath(hash).toFile();
+        if (!objectFile.exists()) {
+            throw new IOException("Object not found: " + hash);
+        }
+        return new InflaterInputStream(Files.newInputStream(objectFile.toPath()));
+    }
+
+    private static String readHeader(InputStream inflater, String hash) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int b;
+        while ((b = inflater.read()) > 0) {
+            header.append((char) b);
+        }
+        if (b != 0 || header.indexOf(" ") < 0) {
+            throw new IOException("Malformed object header: " + hash);
+        }
+        return header.toString();
+    }
+
+    /**
+     * Resolves a tree-ish (HEAD, a branch name, a commit hash or a tree hash)
+     * to a tree hash.
+     *
+     * @param treeIsh Name or hash to resolve
+     * @return Tree hash
+     * @throws IOException If the name does not resolve to a commit or tree
+     */
+    public static String resolveTree(String treeIsh) throws IOException {
+        String hash = treeIsh;
+        if (treeIsh.equals("HEAD")) {
+            hash = readHeadCommit();
+        } else if (Files.exists(Paths.get(".vcs", "refs", "heads", treeIsh))) {
+            hash = new String(Files.readAllBytes(Paths.get(".vcs", "refs", "heads", treeIsh)),
+                    StandardCharsets.UTF_8).trim();
+        }
+
+        if (hash == null || hash.isEmpty()) {
+            throw new IOException("No commits found for " + treeIsh);
+        }
+        if (!hash.matches("[0-9a-f]{40}")) {
+            throw new IOException("Not a valid tree-ish: " + treeIsh);
+        }
+
+        String type = readType(hash);
+        if (type.equals("commit")) {
+            return readTreeHashFromCommit(hash);
+        } else if (type.equals("tree")) {
+            return hash;
+        }
+        throw new IOException(treeIsh + " is a " + type + ", not a tree or commit");
+    }
+
+    /**
+     * Resolves the commit HEAD points at.
+     *
+     * @return Commit hash, or null if the current branch has no commits yet
+     * @throws IOException If HEAD cannot be read
+     */
+    public static String readHeadCommit() throws IOException {
+        String headContent = new String(Files.readAllBytes(Paths.get(HEAD_FILE)), StandardCharsets.UTF_8).trim();
+        if (!headContent.startsWith("ref: ")) {
+            return headContent.isEmpty() ? null : headContent;
+        }
+
+        Path refFile = Paths.get(".vcs", headContent.substring(5));
+        if (!Files.exists(refFile)) {
+            return null;
+        }
+        String commitHash = new String(Files.readAllBytes(refFile), StandardCharsets.UTF_8).trim();
+        return commitHash.isEmpty() ? null : commitHash;
+    }
+
+    /**
+     * Reads the tree hash recorded in a commit, from the commit graph if the
+     * commit is in it.
+     *
+     * @param commitHash SHA-1 hash of the commit
+     * @return Tree hash of the commit
+     * @throws IOException If the commit cannot be read or has no tree
+     */
+    public static String readTreeHashFromCommit(String commitHash) throws IOException {
+        CommitGraph graph = CommitGraph.load();
+        int position = graph == null ? -1 : graph.find(commitHash);
+        if (position >= 0) {
+            return graph.treeAt(position);
+        }
+        for (String line : readCommitHeaders(commitHash)) {
+            if (line.startsWith("tree ")) {
+                return line.substring(5).trim();
+            }
+        }
+        throw new IOException("No tree hash found in commit object " + commitHash);
+    }
+
+    /**
+     * Reads the first parent recorded in a commit, from the commit graph if
+     * the commit is in it.
+     *
+     * @param commitHash SHA-1 hash of the commit
+     * @return Parent hash, or null for a root commit
+     * @throws IOException If the commit cannot be read
+     */
+    public static String readParentHash(String commitHash) throws IOException {
+        CommitGraph graph = CommitGraph.load();
+        int position = graph == null ? -1 : graph.find(commitHash);
+        if (position >= 0) {
+            int parent = graph.firstParentAt(position);
+            return parent < 0 ? null : graph.hashAt(parent);
+        }
+        for (String line : readCommitHeaders(commitHash)) {
+            if (line.startsWith("parent ")) {
+                String parent = line.substring(7).trim();
+                return parent.isEmpty() ? null : parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the header lines of a commit, up to the blank line before the
+     * message. The message itself is never inflated.
+     */
+    static List<String> readCommitHeaders(String commitHash) throws IOException {
+        List<String> headers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(openContent(commitHash), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                headers.add(line);
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the tree of the HEAD commit.
+     *
+     * @return Tree hash, or null if there are no commits yet
+     * @throws IOException If HEAD or the commit cannot be read
+     */
+    public static String readHeadTree() throws IOException {
+        String commitHash = readHeadCommit();
+        return commitHash == null ? null : readTreeHashFromCommit(commitHash);
+    }
+
+    /**
+     * Recursively collects the blobs reachable from a tree.
+     *
+     * @param treeHash SHA-1 hash of the tree
+     * @param prefix   Path of the tree relative to the repository root
+     * @param files    Map receiving path to blob hash entries
+     * @throws IOException If a tree object cannot be read
+     */
+    public static void collectTreeFiles(String treeHash, String prefix, Map<String, String> files)
+            throws IOException {
+        collectTreeFiles(treeHash, prefix, files, new HashMap<>());
+    }
+
+    /**
+     * Recursively collects the blobs reachable from a tree along with the
+     * modes of blobs that are not plain 100644 files.
+     *
+     * @param treeHash SHA-1 hash of the tree
+     * @param prefix   Path of the tree relative to the repository root
+     * @param files    Map receiving path to blob hash entries
+     * @param modes    Map receiving path to mode entries for non-default modes
+     * @throws IOException If a tree object cannot be read
+     */
+    public static void collectTreeFiles(String treeHash, String prefix, Map<String, String> files,
+            Map<String, String> modes) throws IOException {
+        for (TreeEntryDisplay entry : ReadTree.listTreeContents(treeHash)) {
+            String path = prefix.isEmpty() ? entry.name : prefix + "/" + entry.name;
+            if (entry.type.equals("tree")) {
+                collectTreeFiles(entry.hash, path, files, modes);
+            } else {
+                files.put(path, entry.hash);
+                if (!entry.mode.equals("100644")) {
+                    modes.put(path, entry.mode);
+                }
+            }
+        }
+    }
+
+    private static byte[] extractContent(byte[] decompressedContent) {
+        int nullIndex = 0;
+        while (nullIndex < decompressedContent.length && decompressedContent[nullIndex] != 0) {
+            nullIndex++;
+        }
+
+        byte[] content = new byte[decompressedContent.length - nullIndex - 1];
+        System.arraycopy(decompressedContent, nullIndex + 1, content, 0, content.length);
+        return content;
+    }
+
+    private static byte[] decompressFile(File objectFile) throws IOException {
+        try (InflaterInputStream inflater = new InflaterInputStream(Files.newInputStream(objectFile.toPath()))) {
+            return inflater.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders output on a pool of worker threads and prints it in the order the
+ * work was submitted.
+ *
+ * Submitted tasks run concurrently, and their results wait in a reorder
+ * buffer until every earlier result has been printed. Each submit first
+ * prints the finished results at the head of the buffer, so output starts
+ * as soon as the first task finishes rather than when the buffer fills. The
+ * buffer holds a few tasks per thread; when it is full, submitting also
+ * waits for the oldest result, so memory stays bounded however many tasks
+ * there are.
+ */
+public class OrderedOutput implements AutoCloseable {
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final PrintStream out;
+    private final ForkJoinPool pool;
+    private final int capacity;
+    private final ArrayDeque<Future<Output>> pending = new ArrayDeque<>();
+
+    /**
+     * Rendered output of one task, printed on the submitting thread.
+     */
+    @FunctionalInterface
+    public interface Output {
+        /**
+         * @param out Stream to print to
+         * @throws IOException If producing the output fails
+         */
+        void printTo(PrintStream out) throws IOException;
+    }
+
+    /**
+     * @param out     Stream receiving the output
+     * @param threads Number of worker threads; values below 1 use one thread
+     *                per available processor
+     */
+    public OrderedOutput(PrintStream out, int threads) {
+        this.out = out;
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+        this.capacity = parallelism * TASKS_PER_THREAD;
+    }
+
+    /**
+     * Queues a task, first printing every result that is ready in order and,
+     * if the buffer is still full, waiting for the oldest one.
+     *
+     * @param task Renders output on a worker thread
+     * @throws IOException If an earlier task failed
+     */
+    public void submit(Callable<Output> task) throws IOException {
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            printNext();
+        }
+        while (pending.size() >= capacity) {
+            printNext();
+        }
+        pending.add(pool.submit(task));
+    }
+
+    /**
+     * Queues output that needs no rendering, such as a line of text.
+     *
+     * @param line Line to print once every earlier task's output has been
+     *             printed
+     * @throws IOException If an earlier task failed
+     */
+    public void println(String line) throws IOException {
+        submit(() -> out -> out.println(line));
+    }
+
+    /**
+     * Prints every pending result in order.
+     *
+     * @throws IOException If a task failed
+     */
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            printNext();
+        }
+        out.flush();
+    }
+
+    private void printNext() throws IOException {
+        try {
+            pending.poll().get().printTo(out);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Stops the workers. Results not yet flushed are discarded.
+     */
+    @Override
+    public void close() {
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,195 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Limits a command to part of the repository.
+ *
+ * Each element is a path relative to the project root, a glob, or an
+ * exclusion prefixed with {@code :!} or {@code :^}. A literal path matches
+ * itself and everything below it; in a glob "*" and "?" also match "/", so
+ * {@code *.java} matches Java files at any depth. A path matches when it
+ * matches any element that is not an exclusion (or there are none) and no
+ * exclusion.
+ *
+ * Every element has a literal leading directory, the part before its first
+ * wildcard. Walkers ask {@link #mayMatchBelow(String)} before reading a
+ * directory, so only the directories leading to and inside those prefixes
+ * are ever read.
+ */
+public class Pathspec {
+    /** Matches every path */
+    public static final Pathspec ALL = new Pathspec(List.of());
+
+    private final List<Element> includes = new ArrayList<>();
+    private final List<Element> excludes = new ArrayList<>();
+
+    private static class Element {
+        final String path;
+        // Directory every match lies in, "" for the root
+        final String prefix;
+        final Pattern glob;
+
+        Element(String path) {
+            this.path = path;
+            int wildcard = firstWildcard(path);
+            if (wildcard < 0) {
+                this.prefix = path;
+                this.glob = null;
+            } else {
+                int slash = path.lastIndexOf('/', wildcard);
+                this.prefix = slash < 0 ? "" : path.substring(0, slash);
+                this.glob = compileGlob(path);
+            }
+        }
+
+        boolean matches(String candidate) {
+            if (glob != null) {
+                return glob.matcher(candidate).matches();
+            }
+            return path.isEmpty() || candidate.equals(path) || candidate.startsWith(path + "/");
+        }
+
+        /**
+         * @return true if every path below the directory matches
+         */
+        boolean coversDirectory(String directory) {
+            return glob == null && matches(directory);
+        }
+
+        /**
+         * @return true if a path below the directory could match
+         */
+        boolean mayMatchBelow(String directory) {
+            return prefix.isEmpty() || directory.isEmpty() || directory.equals(prefix)
+                    || prefix.startsWith(directory + "/") || directory.startsWith(prefix + "/");
+        }
+    }
+
+    /**
+     * @param elements Paths, globs and {@code :!} exclusions; an empty list
+     *                 matches everything
+     */
+    public Pathspec(Collection<String> elements) {
+        for (String element : elements) {
+            if (element.startsWith(":!") || element.startsWith(":^")) {
+                excludes.add(new Element(normalize(element.substring(2))));
+            } else if (element.startsWith(":(exclude)")) {
+                excludes.add(new Element(normalize(element.substring(":(exclude)".length()))));
+            } else {
+                includes.add(new Element(normalize(element)));
+            }
+        }
+    }
+
+    /**
+     * @param elements Paths from the command line, or null for none
+     */
+    public static Pathspec of(String[] elements) {
+        return elements == null ? ALL : new Pathspec(List.of(elements));
+    }
+
+    /**
+     * @return true if every path matches
+     */
+    public boolean matchesAll() {
+        return excludes.isEmpty() && includes.stream().allMatch(element -> element.path.isEmpty());
+    }
+
+    /**
+     * @return true if every element is a plain path without wildcards or
+     *         exclusions
+     */
+    public boolean isLiteral() {
+        return excludes.isEmpty() && includes.stream().allMatch(element -> element.glob == null);
+    }
+
+    /**
+     * @param path File path relative to the project root
+     * @return true if the path is selected
+     */
+    public boolean matches(String path) {
+        if (!includes.isEmpty() && includes.stream().noneMatch(element -> element.matches(path))) {
+            return false;
+        }
+        return excludes.stream().noneMatch(element -> element.matches(path));
+    }
+
+    /**
+     * Checks whether a directory needs to be read at all.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @return false if no path below the directory can match
+     */
+    public boolean mayMatchBelow(String directory) {
+        if (excludes.stream().anyMatch(element -> element.coversDirectory(directory))) {
+            return false;
+        }
+        return includes.isEmpty() || includes.stream().anyMatch(element -> element.mayMatchBelow(directory));
+    }
+
+    /**
+     * @return The leading directories of the elements that are not
+     *         exclusions, "" if the whole tree may match
+     */
+    public List<String> getPrefixes() {
+        List<String> prefixes = new ArrayList<>();
+        if (includes.isEmpty()) {
+            prefixes.add("");
+        }
+        for (Element element : includes) {
+            prefixes.add(element.prefix);
+        }
+        return prefixes;
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.equals(".") ? "" : normalized;
+    }
+
+    private static int firstWildcard(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                i = end;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
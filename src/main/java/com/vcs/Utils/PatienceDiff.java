@@ -0,0 +1,91 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Patience diff: lines that occur exactly once on each side of a region are
+ * matched up, the longest run of them that appears in the same order on both
+ * sides becomes the set of anchors, and the regions between anchors are
+ * diffed the same way. Unique lines are usually meaningful ones, so braces
+ * and blank lines are never used to line up unrelated code.
+ */
+public class PatienceDiff extends AnchoredDiff {
+
+    private PatienceDiff(int[] a, int[] b) {
+        super(a, b);
+    }
+
+    /**
+     * @param a Line IDs of the old side
+     * @param b Line IDs of the new side
+     * @return Edits in order
+     */
+    public static List<Edit> diff(int[] a, int[] b) {
+        return new PatienceDiff(a, b).run();
+    }
+
+    @Override
+    protected List<Match> anchors(int beginA, int endA, int beginB, int endB) {
+        // Per line: occurrences and last position on each side
+        Map<Integer, int[]> counts = new HashMap<>();
+        for (int i = beginA; i < endA; i++) {
+            int[] count = counts.computeIfAbsent(a[i], id -> new int[4]);
+            count[0]++;
+            count[1] = i;
+        }
+        for (int j = beginB; j < endB; j++) {
+            int[] count = counts.get(b[j]);
+            if (count != null) {
+                count[2]++;
+                count[3] = j;
+            }
+        }
+
+        // Unique common lines in new-side order, with their old-side positions
+        List<int[]> unique = new ArrayList<>();
+        for (int j = beginB; j < endB; j++) {
+            int[] count = counts.get(b[j]);
+            if (count != null && count[0] == 1 && count[2] == 1) {
+                unique.add(new int[] { count[1], j });
+            }
+        }
+        if (unique.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Longest increasing subsequence of old-side positions by patience
+        // sorting: each pile keeps its smallest top, each card its predecessor
+        int[] pileTops = new int[unique.size()];
+        int[] previous = new int[unique.size()];
+        int piles = 0;
+        for (int card = 0; card < unique.size(); card++) {
+            int position = unique.get(card)[0];
+            int low = 0;
+            int high = piles;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (unique.get(pileTops[middle])[0] < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[card] = low > 0 ? pileTops[low - 1] : -1;
+            pileTops[low] = card;
+            if (low == piles) {
+                piles++;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int card = pileTops[piles - 1]; card >= 0; card = previous[card]) {
+            matches.add(new Match(unique.get(card)[0], unique.get(card)[1], 1));
+        }
+        Collections.reverse(matches);
+        return matches;
+    }
+}
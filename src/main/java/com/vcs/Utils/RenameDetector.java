@@ -0,0 +1,403 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Pairs deleted files with added ones to report renames, and optionally
+ * added files with existing ones to report copies.
+ *
+ * Exact matches come first: an added file whose blob hash equals a deleted
+ * file's is a rename, preferring a source with the same file name. The
+ * remaining files are compared by content, where the score is the share of
+ * bytes, counted by whole lines, that the two versions have in common,
+ * relative to the larger of the two.
+ *
+ * Scoring every added file against every deleted one is quadratic, so
+ * candidates are found with MinHash sketches first. Each file's set of line
+ * hashes is reduced to {@value #SKETCH_SIZE} minimums under different hash
+ * functions. The sketches are split into bands of {@value #ROWS_PER_BAND}
+ * values, and two files become candidates when any band is equal, which is
+ * likely when their line sets overlap and unlikely otherwise. Only the
+ * candidates sharing the most bands, at most the candidate limit per added
+ * file, get a full score. Bands shared by more than {@value #MAX_BUCKET}
+ * files, typically from boilerplate such as license headers, say nothing
+ * about a particular pair and are skipped.
+ */
+public class RenameDetector {
+    public static final int DEFAULT_SCORE = 50;
+    public static final int DEFAULT_CANDIDATE_LIMIT = 32;
+
+    private static final int SKETCH_SIZE = 64;
+    private static final int ROWS_PER_BAND = 2;
+    private static final int MAX_BUCKET = 512;
+
+    private final int minScore;
+    private final boolean findCopies;
+    private final int candidateLimit;
+
+    /**
+     * A file that an added file may have been renamed or copied from.
+     */
+    private static class Source {
+        final DiffEntry entry;
+        final String path;
+        final String hash;
+        final String mode;
+        final boolean deleted;
+        boolean renamed;
+
+        Source(DiffEntry entry, boolean deleted) {
+            this.entry = entry;
+            this.path = entry.oldPath;
+            this.hash = entry.oldHash;
+            this.mode = entry.oldMode;
+            this.deleted = deleted;
+        }
+    }
+
+    /**
+     * Line hashes of one file, sorted, with each line's length in bytes
+     * (newline included) in the low 32 bits, and their MinHash sketch.
+     */
+    private static class Fingerprint {
+        final long[] lines;
+        final long size;
+        final int[] sketch;
+
+        Fingerprint(long[] lines, long size, int[] sketch) {
+            this.lines = lines;
+            this.size = size;
+            this.sketch = sketch;
+        }
+    }
+
+    private static class Match {
+        final int score;
+        final DiffEntry added;
+        final Source source;
+
+        Match(int score, DiffEntry added, Source source) {
+            this.score = score;
+            this.added = added;
+            this.source = source;
+        }
+    }
+
+    /**
+     * @param minScore       Minimum similarity, in percent, of a rename or
+     *                       copy that is not exact
+     * @param findCopies     true to also pair added files with modified or
+     *                       already renamed ones as copies
+     * @param candidateLimit Most candidates scored for each added file
+     */
+    public RenameDetector(int minScore, boolean findCopies, int candidateLimit) {
+        this.minScore = Math.max(0, Math.min(100, minScore));
+        this.findCopies = findCopies;
+        this.candidateLimit = Math.max(1, candidateLimit);
+    }
+
+    /**
+     * Replaces matched additions and deletions with renames and copies.
+     *
+     * @param entries Changes between two trees
+     * @return The changes with renames and copies, in path order
+     * @throws IOException If a blob cannot be read
+     */
+    public List<DiffEntry> detect(List<DiffEntry> entries) throws IOException {
+        return detect(entries, true);
+    }
+
+    /**
+     * Replaces matched additions and deletions with renames and copies.
+     *
+     * @param entries        Changes between two trees
+     * @param compareContent false to pair only identical blobs, which needs
+     *                       nothing but their hashes
+     * @return The changes with renames and copies, in path order
+     * @throws IOException If a blob cannot be read
+     */
+    public List<DiffEntry> detect(List<DiffEntry> entries, boolean compareContent) throws IOException {
+        List<DiffEntry> result = new ArrayList<>();
+        List<DiffEntry> added = new ArrayList<>();
+        List<Source> sources = new ArrayList<>();
+        for (DiffEntry entry : entries) {
+            if (entry.isDirectory()) {
+                result.add(entry);
+            } else if (entry.changeType == DiffEntry.ChangeType.ADD) {
+                added.add(entry);
+            } else if (entry.changeType == DiffEntry.ChangeType.DELETE) {
+                sources.add(new Source(entry, true));
+            } else {
+                result.add(entry);
+                if (findCopies && entry.changeType == DiffEntry.ChangeType.MODIFY) {
+                    sources.add(new Source(entry, false));
+                }
+            }
+        }
+
+        if (!added.isEmpty() && !sources.isEmpty()) {
+            added.sort(Comparator.comparing(DiffEntry::getPath));
+            added = matchExact(added, sources, result);
+            if (!added.isEmpty() && compareContent) {
+                added = matchSimilar(added, sources, result);
+            }
+        }
+
+        result.addAll(added);
+        for (Source source : sources) {
+            if (source.deleted && !source.renamed) {
+                result.add(source.entry);
+            }
+        }
+        result.sort(Comparator.comparing(DiffEntry::getPath));
+        return result;
+    }
+
+    /**
+     * Pairs files with identical blobs.
+     *
+     * @return The added files left unmatched
+     */
+    private List<DiffEntry> matchExact(List<DiffEntry> added, List<Source> sources, List<DiffEntry> result) {
+        Map<String, List<Source>> byHash = new HashMap<>();
+        for (Source source : sources) {
+            byHash.computeIfAbsent(source.hash, key -> new ArrayList<>()).add(source);
+        }
+
+        List<DiffEntry> unmatched = new ArrayList<>();
+        for (DiffEntry entry : added) {
+            List<Source> candidates = byHash.get(entry.newHash);
+            Source best = null;
+            if (candidates != null) {
+                String name = fileName(entry.newPath);
+                for (Source candidate : candidates) {
+                    if (candidate.deleted && !candidate.renamed
+                            && (best == null || (!fileName(best.path).equals(name)
+                                    && fileName(candidate.path).equals(name)))) {
+                        best = candidate;
+                    }
+                }
+                if (best == null && findCopies) {
+                    best = candidates.get(0);
+                }
+            }
+
+            if (best == null) {
+                unmatched.add(entry);
+            } else {
+                result.add(pair(entry, best, 100));
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Pairs files by content similarity, best matches first.
+     *
+     * @return The added files left unmatched
+     */
+    private List<DiffEntry> matchSimilar(List<DiffEntry> added, List<Source> sources, List<DiffEntry> result)
+            throws IOException {
+        List<Source> eligible = new ArrayList<>();
+        for (Source source : sources) {
+            if (findCopies || !source.renamed) {
+                eligible.add(source);
+            }
+        }
+        if (eligible.isEmpty()) {
+            return added;
+        }
+
+        Fingerprint[] sourcePrints = fingerprints(eligible.stream().map(source -> source.hash).toArray(String[]::new));
+        Fingerprint[] addedPrints = fingerprints(added.stream().map(entry -> entry.newHash).toArray(String[]::new));
+
+        // Bucket the sources by each band of their sketch
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < eligible.size(); i++) {
+            if (sourcePrints[i].size > 0) {
+                for (int band = 0; band < SKETCH_SIZE / ROWS_PER_BAND; band++) {
+                    buckets.computeIfAbsent(bandKey(sourcePrints[i].sketch, band), key -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < added.size(); i++) {
+            Fingerprint print = addedPrints[i];
+            if (print.size == 0) {
+                continue;
+            }
+
+            Map<Integer, Integer> sharedBands = new HashMap<>();
+            for (int band = 0; band < SKETCH_SIZE / ROWS_PER_BAND; band++) {
+                List<Integer> bucket = buckets.get(bandKey(print.sketch, band));
+                if (bucket != null && bucket.size() <= MAX_BUCKET) {
+                    for (int source : bucket) {
+                        sharedBands.merge(source, 1, Integer::sum);
+                    }
+                }
+            }
+
+            List<Integer> candidates = new ArrayList<>(sharedBands.keySet());
+            candidates.sort(Comparator.comparing((Integer source) -> -sharedBands.get(source))
+                    .thenComparing(source -> source));
+            for (int source : candidates.subList(0, Math.min(candidateLimit, candidates.size()))) {
+                int score = score(sourcePrints[source], print);
+                if (score >= minScore) {
+                    matches.add(new Match(score, added.get(i), eligible.get(source)));
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparing((Match match) -> -match.score)
+                .thenComparing(match -> match.added.newPath)
+                .thenComparing(match -> match.source.path));
+        Set<DiffEntry> paired = new HashSet<>();
+        for (Match match : matches) {
+            if (paired.contains(match.added)) {
+                continue;
+            }
+            boolean rename = match.source.deleted && !match.source.renamed;
+            if (rename || findCopies) {
+                result.add(pair(match.added, match.source, match.score));
+                paired.add(match.added);
+            }
+        }
+
+        List<DiffEntry> unmatched = new ArrayList<>();
+        for (DiffEntry entry : added) {
+            if (!paired.contains(entry)) {
+                unmatched.add(entry);
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Reports an added file as renamed from a deleted source, or copied if
+     * the source is kept or already renamed.
+     */
+    private static DiffEntry pair(DiffEntry added, Source source, int score) {
+        DiffEntry.ChangeType type = DiffEntry.ChangeType.COPY;
+        if (source.deleted && !source.renamed) {
+            source.renamed = true;
+            type = DiffEntry.ChangeType.RENAME;
+        }
+        return new DiffEntry(type, source.path, source.hash, source.mode, added.newPath, added.newHash,
+                added.newMode, score);
+    }
+
+    /**
+     * Reads and fingerprints blobs in parallel.
+     */
+    private static Fingerprint[] fingerprints(String[] hashes) throws IOException {
+        Fingerprint[] prints = new Fingerprint[hashes.length];
+        try {
+            IntStream.range(0, hashes.length).parallel().forEach(i -> {
+                try {
+                    prints[i] = fingerprint(ObjectStore.readContent(hashes[i]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return prints;
+    }
+
+    private static Fingerprint fingerprint(byte[] content) {
+        List<Long> lines = new ArrayList<>();
+        int start = 0;
+        while (start < content.length) {
+            int end = start;
+            int hash = 0x811c9dc5;
+            while (end < content.length && content[end] != '\n') {
+                hash = (hash ^ (content[end] & 0xff)) * 0x01000193;
+                end++;
+            }
+            int length = Math.min(end + 1, content.length) - start;
+            lines.add(((long) hash << 32) | length);
+            start = end + 1;
+        }
+
+        long[] sorted = new long[lines.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = lines.get(i);
+        }
+        Arrays.sort(sorted);
+
+        int[] sketch = new int[SKETCH_SIZE];
+        Arrays.fill(sketch, Integer.MAX_VALUE);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                continue;
+            }
+            int lineHash = (int) (sorted[i] >>> 32);
+            for (int j = 0; j < SKETCH_SIZE; j++) {
+                sketch[j] = Math.min(sketch[j], mix(lineHash, j));
+            }
+        }
+        return new Fingerprint(sorted, content.length, sketch);
+    }
+
+    /**
+     * @return Bytes in lines common to both files, as a percentage of the
+     *         larger file
+     */
+    private int score(Fingerprint source, Fingerprint added) {
+        long larger = Math.max(source.size, added.size);
+        if (Math.min(source.size, added.size) * 100 < larger * minScore) {
+            // Too different in size to share enough lines
+            return 0;
+        }
+
+        long common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < source.lines.length && j < added.lines.length) {
+            if (source.lines[i] == added.lines[j]) {
+                common += (int) source.lines[i];
+                i++;
+                j++;
+            } else if (source.lines[i] < added.lines[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (int) (common * 100 / larger);
+    }
+
+    private static long bandKey(int[] sketch, int band) {
+        long key = band;
+        for (int row = 0; row < ROWS_PER_BAND; row++) {
+            key = key * 0x9E3779B97F4A7C15L + sketch[band * ROWS_PER_BAND + row];
+        }
+        return key;
+    }
+
+    private static int mix(int value, int seed) {
+        int h = value ^ (seed * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x7feb352d;
+        h ^= h >>> 15;
+        h *= 0x846ca68b;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
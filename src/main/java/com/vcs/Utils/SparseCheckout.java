@@ -0,0 +1,153 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Cone-mode sparse checkout patterns stored in {@code .vcs/info/sparse-checkout}.
+ *
+ * The file lists one directory per line (e.g. {@code /services/billing/}).
+ * Files directly in the root, files directly in any ancestor of a cone
+ * directory and everything below a cone directory are part of the checkout.
+ * Every other directory is sparse: it is kept in the index as a single tree
+ * entry and never walked.
+ */
+public class SparseCheckout {
+    private static final String SPARSE_FILE = ".vcs/info/sparse-checkout";
+    private List<String> coneDirectories;
+
+    public SparseCheckout() {
+        this.coneDirectories = new ArrayList<>();
+        loadPatterns();
+    }
+
+    /**
+     * @return true if sparse checkout patterns are in effect
+     */
+    public boolean isEnabled() {
+        return !coneDirectories.isEmpty();
+    }
+
+    /**
+     * Checks whether a directory is part of the checkout, either because it is
+     * inside a cone directory or because it leads to one.
+     *
+     * @param relativeDir Directory relative to the repository root
+     * @return true if the directory should be walked
+     */
+    public boolean isDirectoryIncluded(String relativeDir) {
+        String dir = normalize(relativeDir);
+        if (!isEnabled() || dir.isEmpty()) {
+            return true;
+        }
+
+        for (String cone : coneDirectories) {
+            if (dir.equals(cone) || dir.startsWith(cone + "/") || cone.startsWith(dir + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a directory lies outside the cone and should be collapsed
+     * to a single tree entry.
+     *
+     * @param relativeDir Directory relative to the repository root
+     * @return true if the directory is sparse
+     */
+    public boolean isSparseDirectory(String relativeDir) {
+        return !isDirectoryIncluded(relativeDir);
+    }
+
+    /**
+     * Checks whether a file is part of the checkout.
+     *
+     * @param relativePath File path relative to the repository root
+     * @return true if the file belongs to the cone
+     */
+    public boolean isFileIncluded(String relativePath) {
+        String path = normalize(relativePath);
+        int lastSlash = path.lastIndexOf('/');
+        return isDirectoryIncluded(lastSlash < 0 ? "" : path.substring(0, lastSlash));
+    }
+
+    /**
+     * Replaces the cone with the given directories and persists it.
+     *
+     * @param directories Directories relative to the repository root
+     * @throws IOException If the pattern file cannot be written
+     */
+    public void setConeDirectories(Collection<String> directories) throws IOException {
+        TreeSet<String> normalized = directories.stream()
+                .map(SparseCheckout::normalize)
+                .filter(dir -> !dir.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        // Drop directories already covered by a parent cone directory
+        List<String> cones = new ArrayList<>();
+        for (String dir : normalized) {
+            if (cones.isEmpty() || !dir.startsWith(cones.get(cones.size() - 1) + "/")) {
+                cones.add(dir);
+            }
+        }
+        this.coneDirectories = cones;
+
+        Path sparseFile = Paths.get(SPARSE_FILE);
+        Files.createDirectories(sparseFile.getParent());
+        Files.write(sparseFile, cones.stream().map(dir -> "/" + dir + "/").collect(Collectors.toList()));
+    }
+
+    /**
+     * Turns sparse checkout off by removing the pattern file.
+     *
+     * @throws IOException If the pattern file cannot be deleted
+     */
+    public void disable() throws IOException {
+        coneDirectories = new ArrayList<>();
+        Files.deleteIfExists(Paths.get(SPARSE_FILE));
+    }
+
+    public List<String> getConeDirectories() {
+        return new ArrayList<>(coneDirectories);
+    }
+
+    private void loadPatterns() {
+        Path sparseFile = Paths.get(SPARSE_FILE);
+        if (!Files.exists(sparseFile)) {
+            return;
+        }
+
+        try {
+            coneDirectories = Files.readAllLines(sparseFile).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(SparseCheckout::normalize)
+                    .filter(dir -> !dir.isEmpty())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.err.println("Error reading sparse-checkout file: " + e.getMessage());
+        }
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.equals(".") ? "" : normalized;
+    }
+}
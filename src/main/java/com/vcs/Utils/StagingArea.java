@@ -1,30 +1,66 @@
 package com.vcs.Utils;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 
 import com.vcs.Commands.CreateBlob;
-import com.vcs.Commands.CreateTree;
 
+/**
+ * The index: a snapshot of every tracked path and its blob hash.
+ *
+ * Directories outside the sparse checkout cone are stored as a single entry
+ * whose key ends with {@code /} and whose value is the directory's tree hash.
+ *
+ * The index file holds one {@code path:hash} line per entry in path order
+ * ({@code path:hash:mode} for files that are not plain 100644 files),
+ * followed by a {@code [cache-tree]} section (see {@link CacheTree}).
+ */
 public class StagingArea {
     private static final String OBJECTS_DIR = ".vcs/objects";
-    private Map<String, String> stagedEntries;
+    private NavigableMap<String, String> stagedEntries;
     private static final String INDEX_FILE = ".vcs/index";
+    private static final String INDEX_LOCK_FILE = ".vcs/index.lock";
+    private static final String CACHE_TREE_SECTION = "[cache-tree]";
+    private static final String DEFAULT_FILE_MODE = "100644";
+    private static final String DIRECTORY_MODE = "040000";
+    private static final int LOCK_MAX_ATTEMPTS = 20;
+    private static final long LOCK_INITIAL_DELAY_MS = 5;
+    private static final long LOCK_MAX_DELAY_MS = 500;
     private static IgnoreManager ignore = new IgnoreManager();
     private Path projectRoot;
+    private SparseCheckout sparseCheckout;
+    private CacheTree cacheTree;
+    private Map<String, String> fileModes;
+    private final List<Runnable> pendingChanges = new ArrayList<>();
+    private byte[] loadedDigest;
 
     public StagingArea() {
-        this.stagedEntries = new HashMap<>();
+        this.stagedEntries = new TreeMap<>();
+        this.cacheTree = new CacheTree();
+        this.fileModes = new HashMap<>();
         this.projectRoot = Paths.get(System.getProperty("user.dir"));
+        this.sparseCheckout = new SparseCheckout();
         loadIndex();
     }
 
@@ -34,58 +70,192 @@ public class StagingArea {
         }
 
         path = path.toAbsolutePath().normalize();
+        final Set<String> visitedFiles = new HashSet<>();
+        String relativeRoot = projectRoot.relativize(path).toString();
 
-        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                if (isHiddenPath(dir.toString())) {
-                    return FileVisitResult.SKIP_SUBTREE;
+        if (Files.isDirectory(path)) {
+            if (isHiddenPath(relativeRoot) || (!relativeRoot.isEmpty()
+                    && (sparseCheckout.isSparseDirectory(relativeRoot) || ignore.isIgnored(relativeRoot, true)))) {
+                return;
+            }
+
+            // Stream the directory's files in path order; hidden, ignored and
+            // sparse directories are never descended into
+            try (WorkingTreeScanner workingTree = new WorkingTreeScanner(ignore, sparseCheckout, 1)) {
+                Iterator<String> files = workingTree.files(relativeRoot);
+                while (files.hasNext()) {
+                    String entry = files.next();
+                    stageFile(projectRoot.resolve(entry), entry);
+                    visitedFiles.add(entry);
                 }
+            }
+        } else if (!ignore.isIgnored(projectRoot.relativize(path))) {
+            if (!sparseCheckout.isFileIncluded(relativeRoot)) {
+                System.err.println("Skipping " + relativeRoot + ": outside the sparse-checkout cone");
+            } else {
+                stageFile(path, relativeRoot);
+                visitedFiles.add(relativeRoot);
+            }
+        }
 
-                try {
-                    String treeHash = CreateTree.createTreeForDirectory(dir);
+        // Files that were removed from the added directory leave the index
+        applyChange(() -> removeDeletedEntries(relativeRoot, Pathspec.ALL, visitedFiles));
 
-                    Path relativePath = projectRoot.relativize(dir.toAbsolutePath());
-                    stagedEntries.putIfAbsent(relativePath.toString(), treeHash);
+        // Update index file
+        saveIndex();
+    }
+
+    /**
+     * Stages every file a pathspec selects, reading only the directories
+     * below its leading paths, and drops selected entries whose files are
+     * gone.
+     *
+     * @param pathspec Files to stage
+     * @return Number of files staged
+     * @throws IOException              If a file cannot be read
+     * @throws NoSuchAlgorithmException If SHA-1 is unavailable
+     */
+    public int add(Pathspec pathspec) throws IOException, NoSuchAlgorithmException {
+        final Set<String> visitedFiles = new HashSet<>();
+        List<String> walkedRoots = new ArrayList<>();
 
-                } catch (NoSuchAlgorithmException e) {
-                    System.err.println("Error processing directory " + dir + ": " + e.getMessage());
+        try (WorkingTreeScanner workingTree = new WorkingTreeScanner(ignore, sparseCheckout, 1)) {
+            for (String root : new TreeSet<>(pathspec.getPrefixes())) {
+                // Roots below an earlier root were already walked
+                if (walkedRoots.stream().anyMatch(walked -> walked.isEmpty() || root.startsWith(walked + "/"))) {
+                    continue;
                 }
-                return FileVisitResult.CONTINUE;
-            }
+                walkedRoots.add(root);
 
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (ignore.isIgnored(projectRoot.relativize(file))) {
-                    return FileVisitResult.CONTINUE;
+                Path path = projectRoot.resolve(root);
+                if (Files.isRegularFile(path)) {
+                    if (pathspec.matches(root) && !ignore.isIgnored(root, false)
+                            && sparseCheckout.isFileIncluded(root)) {
+                        stageFile(path, root);
+                        visitedFiles.add(root);
+                    }
+                } else if (Files.isDirectory(path) && !isHiddenPath(root) && (root.isEmpty()
+                        || (!sparseCheckout.isSparseDirectory(root) && !ignore.isIgnored(root, true)))) {
+                    Iterator<String> files = workingTree.files(root, pathspec);
+                    while (files.hasNext()) {
+                        String entry = files.next();
+                        stageFile(projectRoot.resolve(entry), entry);
+                        visitedFiles.add(entry);
+                    }
                 }
+                applyChange(() -> removeDeletedEntries(root, pathspec, visitedFiles));
+            }
+        }
 
-                try {
-                    // Calculate file hash
-                    byte[] bytes = Files.readAllBytes(file);
-                    String fileHash = CreateBlob.hashObject(bytes, true);
+        saveIndex();
+        return visitedFiles.size();
+    }
 
-                    // Add to staged entries using relative path to project root
-                    Path relativePath = projectRoot.relativize(file.toAbsolutePath());
-                    stagedEntries.putIfAbsent(relativePath.toString(), fileHash);
+    private void stageFile(Path file, String entry) throws IOException, NoSuchAlgorithmException {
+        // Calculate file hash
+        byte[] bytes = Files.readAllBytes(file);
+        String fileHash = CreateBlob.hashObject(bytes, true);
 
-                } catch (NoSuchAlgorithmException e) {
-                    // Log error but continue traversal
-                    System.err.println("Error processing file " + file + ": " + e.getMessage());
-                }
-                return FileVisitResult.CONTINUE;
-            }
+        // Add to staged entries using relative path to project root
+        String mode = TreeEntry.fileMode(file);
+        applyChange(() -> stageEntry(entry, fileHash, mode));
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-                // Log any access errors but continue traversal
-                System.err.println("Failed to access " + file + ": " + exc.getMessage());
-                return FileVisitResult.CONTINUE;
-            }
+    private void stageEntry(String path, String hash, String mode) {
+        boolean changed = !hash.equals(stagedEntries.put(path, hash));
+        String previousMode = mode.equals(DEFAULT_FILE_MODE) ? fileModes.remove(path) : fileModes.put(path, mode);
+        if (changed || !mode.equals(previousMode == null ? DEFAULT_FILE_MODE : previousMode)) {
+            cacheTree.invalidate(path);
+        }
+    }
+
+    private void removeDeletedEntries(String prefix, Pathspec pathspec, Set<String> visitedFiles) {
+        List<String> candidates = new ArrayList<>(entriesUnder(prefix).keySet());
+        if (stagedEntries.containsKey(prefix)) {
+            candidates.add(prefix);
+        }
+        List<String> deleted = candidates.stream()
+                .filter(entry -> !isSparseEntry(entry)
+                        && pathspec.matches(entry)
+                        && !visitedFiles.contains(entry)
+                        && !Files.exists(projectRoot.resolve(entry)))
+                .collect(Collectors.toList());
+        for (String entry : deleted) {
+            stagedEntries.remove(entry);
+            fileModes.remove(entry);
+            cacheTree.invalidate(entry);
+        }
+    }
+
+    /**
+     * Applies a change to the in-memory index and remembers it so it can be
+     * replayed on top of a newer index written by another process.
+     */
+    private void applyChange(Runnable change) {
+        change.run();
+        pendingChanges.add(change);
+    }
+
+    /**
+     * Replaces every entry below a directory with a single sparse directory
+     * entry pointing at the directory's tree.
+     *
+     * @param directory Directory relative to the project root
+     * @param treeHash  Hash of the tree object for the directory
+     */
+    public void collapseDirectory(String directory, String treeHash) {
+        applyChange(() -> {
+            fileModes.keySet().removeIf(path -> path.startsWith(directory + "/"));
+            entriesUnder(directory).clear();
+            stagedEntries.put(directory + "/", treeHash);
+            cacheTree.invalidate(directory + "/");
         });
+    }
 
-        // Update index file
-        saveIndex();
+    /**
+     * Replaces a sparse directory entry with the files of its tree.
+     *
+     * @param directory Directory relative to the project root
+     * @param files     Map of file paths to blob hashes below the directory
+     * @param modes     Map of file paths to modes for non-regular files
+     */
+    public void expandDirectory(String directory, Map<String, String> files, Map<String, String> modes) {
+        applyChange(() -> {
+            stagedEntries.remove(directory + "/");
+            stagedEntries.putAll(files);
+            fileModes.putAll(modes);
+            cacheTree.invalidate(directory + "/");
+        });
+    }
+
+    /**
+     * Replaces the whole index, e.g. with the contents of a tree.
+     *
+     * @param entries   Path-ordered entries of the new index
+     * @param modes     Map of file paths to modes for non-regular files
+     * @param cacheTree Cache-tree describing the new entries
+     */
+    public void replaceAll(NavigableMap<String, String> entries, Map<String, String> modes, CacheTree cacheTree) {
+        applyChange(() -> {
+            this.stagedEntries = new TreeMap<>(entries);
+            this.fileModes = new HashMap<>(modes);
+            this.cacheTree = cacheTree;
+        });
+    }
+
+    private static boolean isSparseEntry(String entry) {
+        return entry.endsWith("/");
+    }
+
+    /**
+     * Returns a live view of the entries below a directory. Entries of a
+     * directory are contiguous because '0' sorts directly after '/'.
+     */
+    private NavigableMap<String, String> entriesUnder(String directory) {
+        if (directory.isEmpty()) {
+            return stagedEntries;
+        }
+        return stagedEntries.subMap(directory + "/", true, directory + "0", false);
     }
 
     // Helper method to check if a path is hidden
@@ -98,14 +268,46 @@ public class StagingArea {
 
     // Remove a file from staging area
     public void remove(Path filePath) throws IOException {
-        if (stagedEntries.remove(filePath.toString()) != null) {
+        String entry = filePath.toString();
+        if (stagedEntries.containsKey(entry)) {
+            removeEntry(entry);
             saveIndex();
         }
     }
 
+    /**
+     * Records a blob for a path without reading the working tree.
+     * 
+     * @param path Index path relative to the repository root
+     * @param hash Blob hash
+     * @param mode File mode, e.g. 100644 or 100755
+     */
+    public void setEntry(String path, String hash, String mode) {
+        applyChange(() -> stageEntry(path, hash, mode));
+    }
+
+    /**
+     * Removes a single index entry; a trailing slash names a collapsed sparse
+     * directory.
+     * 
+     * @param path Index path relative to the repository root
+     */
+    public void removeEntry(String path) {
+        applyChange(() -> {
+            if (stagedEntries.remove(path) != null) {
+                fileModes.remove(path);
+                cacheTree.invalidate(path);
+            }
+        });
+    }
+
     // Clear staging area
     public void clear() {
-        stagedEntries.clear();
+        applyChange(() -> {
+            stagedEntries.clear();
+            fileModes.clear();
+            cacheTree.clear();
+        });
         try {
             saveIndex();
         } catch (IOException e) {
@@ -118,28 +320,185 @@ public class StagingArea {
         try {
             Path indexPath = Paths.get(INDEX_FILE);
             if (Files.exists(indexPath)) {
-                stagedEntries = new HashMap<>();
-                Files.lines(indexPath).forEach(line -> {
-                    String[] parts = line.split(":");
-                    stagedEntries.put(parts[0], parts[1]);
-                });
+                byte[] content = Files.readAllBytes(indexPath);
+                parseIndex(content);
+                loadedDigest = digest(content);
             }
         } catch (IOException e) {
-            stagedEntries = new HashMap<>();
+            stagedEntries = new TreeMap<>();
+            fileModes = new HashMap<>();
+            cacheTree = new CacheTree();
         }
     }
 
-    private void saveIndex() throws IOException {
+    private void parseIndex(byte[] content) {
+        stagedEntries = new TreeMap<>();
+        fileModes = new HashMap<>();
+        List<String> cacheTreeLines = new ArrayList<>();
+        boolean inCacheTree = false;
+        for (String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals(CACHE_TREE_SECTION)) {
+                inCacheTree = true;
+            } else if (inCacheTree) {
+                cacheTreeLines.add(line);
+            } else {
+                String[] parts = line.split(":");
+                stagedEntries.put(parts[0], parts[1]);
+                if (parts.length > 2) {
+                    fileModes.put(parts[0], parts[2]);
+                }
+            }
+        }
+        cacheTree = CacheTree.fromLines(cacheTreeLines);
+    }
+
+    /**
+     * Writes the index under {@code .vcs/index.lock}.
+     *
+     * The lock is taken with an exclusive create. If the index changed on disk
+     * since it was loaded, the on-disk version is re-read and this instance's
+     * pending changes are replayed on top of it, so parallel {@code add}
+     * processes never drop each other's entries. The result is written to the
+     * lock file and atomically renamed over the index.
+     *
+     * @throws IOException If the lock cannot be acquired or the index written
+     */
+    public void saveIndex() throws IOException {
         Path indexPath = Paths.get(INDEX_FILE);
+        Path lockPath = Paths.get(INDEX_LOCK_FILE);
         Files.createDirectories(indexPath.getParent());
 
-        Stream<String> indexEntries = stagedEntries.entrySet().stream()
-                .map(entry -> entry.getKey() + ":" + entry.getValue());
+        acquireLock(lockPath);
+        boolean renamed = false;
+        try {
+            byte[] current = Files.exists(indexPath) ? Files.readAllBytes(indexPath) : null;
+            byte[] currentDigest = current == null ? null : digest(current);
+            if (!Arrays.equals(currentDigest, loadedDigest)) {
+                // Another process updated the index: merge our changes into it
+                if (current == null) {
+                    stagedEntries = new TreeMap<>();
+                    fileModes = new HashMap<>();
+                    cacheTree = new CacheTree();
+                } else {
+                    parseIndex(current);
+                }
+                pendingChanges.forEach(Runnable::run);
+            }
+
+            List<String> lines = new ArrayList<>(stagedEntries.size() + 1);
+            stagedEntries.forEach((path, hash) -> lines.add(fileModes.containsKey(path)
+                    ? path + ":" + hash + ":" + fileModes.get(path)
+                    : path + ":" + hash));
+            lines.add(CACHE_TREE_SECTION);
+            lines.addAll(cacheTree.toLines());
+            byte[] content = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+
+            Files.write(lockPath, content);
+            Files.move(lockPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            renamed = true;
+
+            loadedDigest = digest(content);
+            pendingChanges.clear();
+        } finally {
+            if (!renamed) {
+                Files.deleteIfExists(lockPath);
+            }
+        }
+    }
+
+    /**
+     * Creates the lock file, backing off exponentially with jitter while
+     * another process holds it.
+     */
+    private void acquireLock(Path lockPath) throws IOException {
+        long delay = LOCK_INITIAL_DELAY_MS;
+        for (int attempt = 1;; attempt++) {
+            try {
+                Files.createFile(lockPath);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                if (attempt >= LOCK_MAX_ATTEMPTS) {
+                    throw new IOException("Unable to lock index: " + lockPath
+                            + " exists. If no other vcs process is running, remove it and retry.");
+                }
+            }
+
+            try {
+                Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for index lock", e);
+            }
+            delay = Math.min(delay * 2, LOCK_MAX_DELAY_MS);
+        }
+    }
 
-        Files.write(indexPath, (Iterable<String>) indexEntries::iterator);
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return Read-only, path-ordered view of every index entry, including
+     *         sparse directory entries
+     */
+    public NavigableMap<String, String> getIndexEntries() {
+        return Collections.unmodifiableNavigableMap(stagedEntries);
+    }
+
+    /**
+     * Returns the tree entry mode recorded for a path.
+     *
+     * @param path Index path
+     * @return 040000 for sparse directory entries, otherwise the file mode
+     *         recorded when the file was staged (100644 by default)
+     */
+    public String getMode(String path) {
+        if (isSparseEntry(path)) {
+            return DIRECTORY_MODE;
+        }
+        return fileModes.getOrDefault(path, DEFAULT_FILE_MODE);
     }
 
+    public CacheTree getCacheTree() {
+        return cacheTree;
+    }
+
+    /**
+     * @return Map of tracked file paths to blob hashes, excluding sparse
+     *         directory entries
+     */
     public Map<String, String> getStagedFiles() {
-        return new HashMap<>(stagedEntries);
+        Map<String, String> files = new HashMap<>();
+        stagedEntries.forEach((path, hash) -> {
+            if (!isSparseEntry(path)) {
+                files.put(path, hash);
+            }
+        });
+        return files;
+    }
+
+    /**
+     * @return Map of collapsed directory paths (without trailing slash) to tree
+     *         hashes
+     */
+    public Map<String, String> getSparseDirectories() {
+        Map<String, String> directories = new HashMap<>();
+        stagedEntries.forEach((path, hash) -> {
+            if (isSparseEntry(path)) {
+                directories.put(path.substring(0, path.length() - 1), hash);
+            }
+        });
+        return directories;
+    }
+
+    public SparseCheckout getSparseCheckout() {
+        return sparseCheckout;
     }
 }
\ No newline at end of file
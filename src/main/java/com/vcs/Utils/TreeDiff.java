@@ -0,0 +1,158 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import com.vcs.Commands.ReadTree;
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+
+/**
+ * Compares two trees, such as the trees of two commits.
+ *
+ * Both trees are read one level at a time and their entries, sorted by name
+ * with directories keyed as "name/", are merged in a single pass. A
+ * subdirectory whose tree ID is the same on both sides is identical and is
+ * never read, so the work grows with the number of changed directories
+ * rather than the size of the repository. Directories that cannot contain a
+ * path of the pathspec are skipped as well.
+ */
+public class TreeDiff {
+    private static final Comparator<TreeEntryDisplay> ENTRY_ORDER = Comparator.comparing(TreeDiff::key);
+
+    private final Pathspec pathspec;
+
+    /**
+     * Receives changes in path order.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param entry An added, deleted or modified file
+         * @return false to stop the walk
+         * @throws IOException If handling the change fails
+         */
+        boolean visit(DiffEntry entry) throws IOException;
+    }
+
+    /**
+     * @param pathspec Paths to report
+     */
+    public TreeDiff(Pathspec pathspec) {
+        this.pathspec = pathspec;
+    }
+
+    /**
+     * Lists every changed file.
+     *
+     * @param oldTree Tree of the old side, or null for an empty tree
+     * @param newTree Tree of the new side, or null for an empty tree
+     * @return Changes in path order
+     * @throws IOException If a tree object cannot be read
+     */
+    public List<DiffEntry> diff(String oldTree, String newTree) throws IOException {
+        List<DiffEntry> entries = new ArrayList<>();
+        walk(oldTree, newTree, entry -> entries.add(entry));
+        return entries;
+    }
+
+    /**
+     * Walks the changed files.
+     *
+     * @param oldTree Tree of the old side, or null for an empty tree
+     * @param newTree Tree of the new side, or null for an empty tree
+     * @param visitor Receives every changed file
+     * @return false if the visitor stopped the walk early
+     * @throws IOException If a tree object cannot be read
+     */
+    public boolean walk(String oldTree, String newTree, Visitor visitor) throws IOException {
+        return walkDirectory("", oldTree, newTree, visitor);
+    }
+
+    private boolean walkDirectory(String directory, String oldTree, String newTree, Visitor visitor)
+            throws IOException {
+        if (Objects.equals(oldTree, newTree)) {
+            return true;
+        }
+
+        List<TreeEntryDisplay> oldEntries = listEntries(oldTree);
+        List<TreeEntryDisplay> newEntries = listEntries(newTree);
+        String prefix = directory.isEmpty() ? "" : directory + "/";
+
+        int i = 0;
+        int j = 0;
+        while (i < oldEntries.size() || j < newEntries.size()) {
+            TreeEntryDisplay oldEntry = i < oldEntries.size() ? oldEntries.get(i) : null;
+            TreeEntryDisplay newEntry = j < newEntries.size() ? newEntries.get(j) : null;
+            int order = oldEntry == null ? 1 : newEntry == null ? -1 : key(oldEntry).compareTo(key(newEntry));
+
+            if (order < 0) {
+                i++;
+                if (!visitRemoved(prefix + oldEntry.name, oldEntry, visitor)) {
+                    return false;
+                }
+                continue;
+            }
+            if (order > 0) {
+                j++;
+                if (!visitAdded(prefix + newEntry.name, newEntry, visitor)) {
+                    return false;
+                }
+                continue;
+            }
+
+            i++;
+            j++;
+            if (oldEntry.hash.equals(newEntry.hash) && oldEntry.mode.equals(newEntry.mode)) {
+                // Identical file or subtree
+                continue;
+            }
+            String path = prefix + newEntry.name;
+            if (isTree(newEntry)) {
+                if (pathspec.mayMatchBelow(path) && !walkDirectory(path, oldEntry.hash, newEntry.hash, visitor)) {
+                    return false;
+                }
+            } else if (pathspec.matches(path)
+                    && !visitor.visit(DiffEntry.modify(path, oldEntry.hash, oldEntry.mode, newEntry.hash,
+                            newEntry.mode))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean visitRemoved(String path, TreeEntryDisplay entry, Visitor visitor) throws IOException {
+        if (isTree(entry)) {
+            return !pathspec.mayMatchBelow(path) || walkDirectory(path, entry.hash, null, visitor);
+        }
+        return !pathspec.matches(path) || visitor.visit(DiffEntry.delete(path, entry.hash, entry.mode));
+    }
+
+    private boolean visitAdded(String path, TreeEntryDisplay entry, Visitor visitor) throws IOException {
+        if (isTree(entry)) {
+            return !pathspec.mayMatchBelow(path) || walkDirectory(path, null, entry.hash, visitor);
+        }
+        return !pathspec.matches(path) || visitor.visit(DiffEntry.add(path, entry.hash, entry.mode));
+    }
+
+    private static List<TreeEntryDisplay> listEntries(String tree) throws IOException {
+        if (tree == null) {
+            return List.of();
+        }
+        List<TreeEntryDisplay> entries = new ArrayList<>(ReadTree.listTreeContents(tree));
+        // Already in name order when written by write-tree; directories sort
+        // as "name/" so the walk comes out in path order
+        entries.sort(ENTRY_ORDER);
+        return entries;
+    }
+
+    private static String key(TreeEntryDisplay entry) {
+        return isTree(entry) ? entry.name + "/" : entry.name;
+    }
+
+    private static boolean isTree(TreeEntryDisplay entry) {
+        return entry.type.equals("tree");
+    }
+}
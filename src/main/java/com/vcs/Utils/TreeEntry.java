@@ -5,13 +5,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
-import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.Set;
 
-import com.vcs.Commands.CreateBlob;
-import com.vcs.Commands.CreateTree;
-
 import lombok.Getter;
 import lombok.Setter;
 
@@ -49,44 +45,28 @@ public class TreeEntry {
     // }
 
     /**
-     * Constructs a TreeEntry for a file or blob.
+     * Constructs a TreeEntry from an object that is already in the object
+     * store, without touching the working tree.
      * 
-     * @param file The file to create a tree entry for
-     * @throws IOException              If there's an error reading file
-     * @throws NoSuchAlgorithmException If hash computation fails
+     * @param name Name of the file or directory
+     * @param mode Entry mode (e.g. 100644, 100755 or 040000)
+     * @param hash SHA-1 hash of the blob or tree
      */
-    public TreeEntry(File file) throws IOException, NoSuchAlgorithmException {
-        this.name = file.getName();
-
-        // Check if file/directory exists before processing
-        if (!file.exists()) {
-            throw new IOException("File or directory does not exist: " + file.getPath());
-        }
-
-        try {
-            if (file.isDirectory()) {
-                this.mode = "040000"; // Directory
-                this.type = EntryType.TREE;
-
-                this.hash = CreateTree.createTreeForDirectory(file.toPath());
-            } else {
-                // Safely read file permissions
-                Set<PosixFilePermission> permissions = getFilePermissions(file.toPath());
-
-                // Regular file mode
-                this.mode = determineFileMode(permissions);
-                this.type = EntryType.BLOB;
-
-                // Additional check to ensure file is readable
-                if (!file.canRead()) {
-                    throw new IOException("Cannot read file: " + file.getPath());
-                }
-
-                this.hash = CreateBlob.hashObject(Files.readAllBytes(file.toPath()), true);
-            }
-        } catch (SecurityException | IOException e) {
+    public TreeEntry(String name, String mode, String hash) {
+        this.name = name;
+        this.mode = mode;
+        this.type = mode.startsWith("04") ? EntryType.TREE : EntryType.BLOB;
+        this.hash = hash;
+    }
 
-        }
+    /**
+     * Determines the tree entry mode of a regular file from its permissions.
+     * 
+     * @param path Path to the file
+     * @return 100755 for executable files, 100644 otherwise
+     */
+    public static String fileMode(Path path) {
+        return determineFileMode(getFilePermissions(path));
     }
 
     /**
@@ -95,7 +75,7 @@ public class TreeEntry {
      * @param path Path to the file
      * @return Set of file permissions
      */
-    private Set<PosixFilePermission> getFilePermissions(Path path) {
+    private static Set<PosixFilePermission> getFilePermissions(Path path) {
         try {
             // First try POSIX permissions
             return Files.getPosixFilePermissions(path);
@@ -111,7 +91,7 @@ public class TreeEntry {
      * @param permissions Set of file permissions
      * @return File mode as a string
      */
-    private String determineFileMode(Set<PosixFilePermission> permissions) {
+    private static String determineFileMode(Set<PosixFilePermission> permissions) {
         boolean isExecutable = permissions.contains(PosixFilePermission.OWNER_EXECUTE) ||
                 permissions.contains(PosixFilePermission.GROUP_EXECUTE) ||
                 permissions.contains(PosixFilePermission.OTHERS_EXECUTE);
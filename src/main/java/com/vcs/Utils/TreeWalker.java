@@ -0,0 +1,306 @@
+package com.vcs.Utils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.vcs.Commands.ReadTree;
+import com.vcs.Commands.ReadTree.TreeEntryDisplay;
+
+/**
+ * Walks a tree, the index and the working tree side by side, one directory at
+ * a time.
+ *
+ * Each level merges the tree's entries, the index entries directly in the
+ * directory and the directory's listing in name order, and reports only the
+ * paths where the three disagree. A directory whose tree ID equals the
+ * index's cache-tree ID is identical in both, so the tree side is not read
+ * below it, and without a working tree side the directory is skipped
+ * entirely. Only the entries of the directories being visited, and the
+ * prefetched working tree listings of their subdirectories, are held in
+ * memory.
+ */
+public class TreeWalker {
+    private static final String DIRECTORY_MODE = "040000";
+
+    private final StagingArea stagingArea;
+    private final NavigableMap<String, String> index;
+    private final String treeHash;
+    private final boolean compareTree;
+    private final WorkingTreeScanner workingTree;
+    private final Pathspec pathspec;
+
+    /**
+     * A path whose tree, index and working tree versions are not all equal.
+     * Hashes and modes are null where the path is absent; a collapsed sparse
+     * directory is reported as a single entry with mode 040000.
+     */
+    public static class Change {
+        public final String path;
+        public final String treeHash;
+        public final String treeMode;
+        public final String indexHash;
+        public final String indexMode;
+        public final String workingHash;
+
+        Change(String path, String treeHash, String treeMode, String indexHash, String indexMode,
+                String workingHash) {
+            this.path = path;
+            this.treeHash = treeHash;
+            this.treeMode = treeMode;
+            this.indexHash = indexHash;
+            this.indexMode = indexMode;
+            this.workingHash = workingHash;
+        }
+
+        /**
+         * @return true if the index differs from the tree
+         */
+        public boolean isStaged() {
+            return !Objects.equals(treeHash, indexHash) || !Objects.equals(treeMode, indexMode);
+        }
+
+        /**
+         * @return true if a tracked file differs in the working tree
+         */
+        public boolean isUnstaged() {
+            return indexHash != null && !indexHash.equals(workingHash);
+        }
+
+        /**
+         * @return true if the file exists only in the working tree
+         */
+        public boolean isUntracked() {
+            return indexHash == null && workingHash != null;
+        }
+
+        /**
+         * @return 'A', 'M' or 'D' for a staged addition, modification or
+         *         deletion, ' ' if the index matches the tree
+         */
+        public char indexStatus() {
+            if (!isStaged()) {
+                return ' ';
+            }
+            return treeHash == null ? 'A' : indexHash == null ? 'D' : 'M';
+        }
+
+        /**
+         * @return 'M' or 'D' for a modified or deleted working tree file, ' '
+         *         if it matches the index
+         */
+        public char workingStatus() {
+            if (!isUnstaged()) {
+                return ' ';
+            }
+            return workingHash == null ? 'D' : 'M';
+        }
+    }
+
+    /**
+     * Receives changes in path order.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param change A path that differs
+         * @return false to stop the walk
+         * @throws IOException If handling the change fails
+         */
+        boolean visit(Change change) throws IOException;
+    }
+
+    /**
+     * @param stagingArea Index to walk
+     * @param treeHash    Tree to compare the index with, or null for an empty
+     *                    tree
+     * @param compareTree false to treat the tree side as equal to the index,
+     *                    comparing only the index and the working tree
+     * @param workingTree Working tree to compare with the index, or null to
+     *                    leave the working tree out
+     */
+    public TreeWalker(StagingArea stagingArea, String treeHash, boolean compareTree, WorkingTreeScanner workingTree) {
+        this(stagingArea, treeHash, compareTree, workingTree, Pathspec.ALL);
+    }
+
+    /**
+     * @param stagingArea Index to walk
+     * @param treeHash    Tree to compare the index with, or null for an empty
+     *                    tree
+     * @param compareTree false to treat the tree side as equal to the index,
+     *                    comparing only the index and the working tree
+     * @param workingTree Working tree to compare with the index, or null to
+     *                    leave the working tree out
+     * @param pathspec    Paths to report; directories that cannot contain a
+     *                    match are neither read nor listed
+     */
+    public TreeWalker(StagingArea stagingArea, String treeHash, boolean compareTree, WorkingTreeScanner workingTree,
+            Pathspec pathspec) {
+        this.stagingArea = stagingArea;
+        this.index = stagingArea.getIndexEntries();
+        this.treeHash = treeHash;
+        this.compareTree = compareTree;
+        this.workingTree = workingTree;
+        this.pathspec = pathspec;
+    }
+
+    /**
+     * Walks the whole repository.
+     *
+     * @param visitor Receives every differing path
+     * @return false if the visitor stopped the walk early
+     * @throws IOException If a tree object or the working tree cannot be read
+     */
+    public boolean walk(Visitor visitor) throws IOException {
+        return walkDirectory("", treeHash, !compareTree, stagingArea.getCacheTree(), visitor);
+    }
+
+    /**
+     * @param directory      Directory relative to the root, "" for the root
+     * @param directoryTree  Tree of the directory on the tree side, or null
+     * @param sameAsIndex    true if the tree side is known to equal the index
+     *                       below this directory
+     * @param node           Cache-tree node for the directory, or null
+     */
+    private boolean walkDirectory(String directory, String directoryTree, boolean sameAsIndex, CacheTree node,
+            Visitor visitor) throws IOException {
+        String prefix = directory.isEmpty() ? "" : directory + "/";
+
+        // Index entries directly in this directory
+        Map<String, String> indexFiles = new HashMap<>();
+        Map<String, String> indexSparse = new HashMap<>();
+        Set<String> indexDirectories = new HashSet<>();
+        String key = index.ceilingKey(prefix);
+        while (key != null && key.startsWith(prefix)) {
+            String rest = key.substring(prefix.length());
+            int slash = rest.indexOf('/');
+            if (slash < 0) {
+                indexFiles.put(rest, index.get(key));
+                key = index.higherKey(key);
+                continue;
+            }
+
+            String name = rest.substring(0, slash);
+            if (slash == rest.length() - 1) {
+                indexSparse.put(name, index.get(key));
+            } else {
+                indexDirectories.add(name);
+            }
+            key = index.ceilingKey(prefix + name + "0");
+        }
+
+        // Tree entries, unless the tree is known to match the index
+        Map<String, TreeEntryDisplay> treeFiles = new HashMap<>();
+        Map<String, String> treeDirectories = new HashMap<>();
+        if (!sameAsIndex && directoryTree != null) {
+            for (TreeEntryDisplay entry : ReadTree.listTreeContents(directoryTree)) {
+                if (entry.type.equals("tree")) {
+                    treeDirectories.put(entry.name, entry.hash);
+                } else {
+                    treeFiles.put(entry.name, entry);
+                }
+            }
+        }
+
+        // Working tree listing
+        Map<String, String> workingEntries = workingTree == null ? Collections.emptyMap()
+                : workingTree.readDirectory(directory, pathspec);
+
+        // Directories are keyed as "name/" so entries come out in index order
+        TreeSet<String> keys = new TreeSet<>();
+        keys.addAll(indexFiles.keySet());
+        keys.addAll(treeFiles.keySet());
+        indexSparse.keySet().forEach(name -> keys.add(name + "/"));
+        indexDirectories.forEach(name -> keys.add(name + "/"));
+        treeDirectories.keySet().forEach(name -> keys.add(name + "/"));
+        workingEntries.forEach((name, hash) -> keys.add(WorkingTreeScanner.DIRECTORY.equals(hash) ? name + "/" : name));
+
+        // Start reading the working tree subdirectories the walk will enter,
+        // so they are listed and hashed in parallel while this level is
+        // merged
+        for (Map.Entry<String, String> entry : workingEntries.entrySet()) {
+            String path = prefix + entry.getKey();
+            if (WorkingTreeScanner.DIRECTORY.equals(entry.getValue()) && !indexSparse.containsKey(entry.getKey())
+                    && pathspec.mayMatchBelow(path)) {
+                workingTree.prefetch(path, pathspec);
+            }
+        }
+
+        for (String entry : keys) {
+            boolean isDirectory = entry.endsWith("/");
+            String name = isDirectory ? entry.substring(0, entry.length() - 1) : entry;
+            String path = prefix + name;
+
+            if (!isDirectory) {
+                if (!pathspec.matches(path)) {
+                    continue;
+                }
+                String indexHash = indexFiles.get(name);
+                String indexMode = indexHash == null ? null : stagingArea.getMode(path);
+                TreeEntryDisplay treeFile = treeFiles.get(name);
+                String treeHash = sameAsIndex ? indexHash : treeFile == null ? null : treeFile.hash;
+                String treeMode = sameAsIndex ? indexMode : treeFile == null ? null : treeFile.mode;
+
+                String workingHash = indexHash;
+                if (workingTree != null) {
+                    workingHash = workingEntries.get(name);
+                    if (indexHash != null && workingHash == null) {
+                        // Tracked files filtered out of the listing, e.g. ignored ones
+                        workingHash = workingTree.hashFile(path);
+                    }
+                }
+                if (!visit(new Change(path, treeHash, treeMode, indexHash, indexMode, workingHash), visitor)) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (!pathspec.mayMatchBelow(path)) {
+                continue;
+            }
+            String treeDirectory = treeDirectories.get(name);
+            if (indexSparse.containsKey(name)) {
+                // Collapsed directories are compared by tree ID and never
+                // present in the working tree
+                String indexHash = indexSparse.get(name);
+                String treeHash = sameAsIndex ? indexHash : treeDirectory;
+                Change change = new Change(path, treeHash, treeHash == null ? null : DIRECTORY_MODE, indexHash,
+                        DIRECTORY_MODE, indexHash);
+                if (!visit(change, visitor)) {
+                    return false;
+                }
+                continue;
+            }
+
+            boolean indexDirectory = indexDirectories.contains(name);
+            CacheTree child = node == null ? null : node.getChild(name);
+            boolean childSameAsIndex = sameAsIndex
+                    || (indexDirectory && treeDirectory != null && child != null && child.isValid()
+                            && child.getTreeHash().equals(treeDirectory));
+            if (childSameAsIndex && workingTree == null) {
+                // Identical subtree and no working tree to look at
+                continue;
+            }
+            if (!walkDirectory(path, childSameAsIndex ? null : treeDirectory, childSameAsIndex, child, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes a change to the visitor unless all three sides agree.
+     */
+    private boolean visit(Change change, Visitor visitor) throws IOException {
+        if (!change.isStaged() && Objects.equals(change.indexHash, change.workingHash)) {
+            return true;
+        }
+        return visitor.visit(change);
+    }
+}
@@ -0,0 +1,170 @@
+package com.vcs.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formats the differences between two versions of a file as unified diff
+ * hunks.
+ *
+ * Lines are interned first: each distinct line gets an integer ID from a hash
+ * table, so the diff algorithm compares ints rather than strings. Edits
+ * closer together than twice the context are joined into one hunk.
+ */
+public class UnifiedDiff {
+    private final int contextLines;
+    private final DiffAlgorithm algorithm;
+
+    /**
+     * One {@code @@ -a,b +c,d @@} block with its context, removed and added
+     * lines, each prefixed with ' ', '-' or '+'.
+     */
+    public static class Hunk {
+        public final int oldStart;
+        public final int oldCount;
+        public final int newStart;
+        public final int newCount;
+        public final List<String> lines;
+
+        Hunk(int oldStart, int oldCount, int newStart, int newCount, List<String> lines) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+            this.lines = lines;
+        }
+
+        /**
+         * @return The {@code @@ -a,b +c,d @@} header line
+         */
+        public String getHeader() {
+            return "@@ -" + range(oldStart, oldCount) + " +" + range(newStart, newCount) + " @@";
+        }
+
+        private static String range(int start, int count) {
+            // Line numbers are 1-based; an empty range names the line before it
+            if (count == 0) {
+                return start + ",0";
+            }
+            return count == 1 ? String.valueOf(start + 1) : (start + 1) + "," + count;
+        }
+    }
+
+    /**
+     * @param contextLines Unchanged lines shown around each change
+     */
+    public UnifiedDiff(int contextLines) {
+        this(contextLines, DiffAlgorithm.HISTOGRAM);
+    }
+
+    /**
+     * @param contextLines Unchanged lines shown around each change
+     * @param algorithm    Algorithm computing the edits
+     */
+    public UnifiedDiff(int contextLines, DiffAlgorithm algorithm) {
+        this.contextLines = Math.max(0, contextLines);
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Computes the edits between two versions.
+     *
+     * @param oldLines Lines of the old version
+     * @param newLines Lines of the new version
+     * @return Edits in order
+     */
+    public List<Edit> edits(List<String> oldLines, List<String> newLines) {
+        Map<String, Integer> ids = new HashMap<>();
+        return algorithm.diff(intern(oldLines, ids), intern(newLines, ids));
+    }
+
+    /**
+     * Computes the hunks between two versions.
+     *
+     * @param oldLines Lines of the old version
+     * @param newLines Lines of the new version
+     * @return Hunks in order, empty if the versions are equal
+     */
+    public List<Hunk> hunks(List<String> oldLines, List<String> newLines) {
+        return hunks(oldLines, newLines, edits(oldLines, newLines));
+    }
+
+    /**
+     * Groups edits into hunks with context.
+     *
+     * @param oldLines Lines of the old version
+     * @param newLines Lines of the new version
+     * @param edits    Edits between the two, in order
+     * @return Hunks in order
+     */
+    public List<Hunk> hunks(List<String> oldLines, List<String> newLines, List<Edit> edits) {
+        List<Hunk> hunks = new ArrayList<>();
+        for (int[] group : group(edits, contextLines)) {
+            int first = group[0];
+            int last = group[1];
+            Edit firstEdit = edits.get(first);
+            Edit lastEdit = edits.get(last);
+            int oldStart = Math.max(0, firstEdit.beginA - contextLines);
+            int oldEnd = Math.min(oldLines.size(), lastEdit.endA + contextLines);
+            int newStart = firstEdit.beginB - (firstEdit.beginA - oldStart);
+            int newEnd = lastEdit.endB + (oldEnd - lastEdit.endA);
+
+            List<String> lines = new ArrayList<>();
+            int position = oldStart;
+            for (int i = first; i <= last; i++) {
+                Edit edit = edits.get(i);
+                addLines(lines, ' ', oldLines, position, edit.beginA);
+                addLines(lines, '-', oldLines, edit.beginA, edit.endA);
+                addLines(lines, '+', newLines, edit.beginB, edit.endB);
+                position = edit.endA;
+            }
+            addLines(lines, ' ', oldLines, position, oldEnd);
+
+            hunks.add(new Hunk(oldStart, oldEnd - oldStart, newStart, newEnd - newStart, lines));
+        }
+        return hunks;
+    }
+
+    /**
+     * Splits edits into the runs that share a hunk.
+     *
+     * @param edits        Edits in order
+     * @param contextLines Unchanged lines shown around each change
+     * @return Indexes of the first and last edit of each hunk
+     */
+    static List<int[]> group(List<Edit> edits, int contextLines) {
+        List<int[]> groups = new ArrayList<>();
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size()
+                    && edits.get(last + 1).beginA - edits.get(last).endA <= 2 * contextLines) {
+                last++;
+            }
+            groups.add(new int[] { first, last });
+            first = last + 1;
+        }
+        return groups;
+    }
+
+    private static void addLines(List<String> lines, char prefix, List<String> source, int begin, int end) {
+        for (int i = begin; i < end; i++) {
+            lines.add(prefix + source.get(i));
+        }
+    }
+
+    private static int[] intern(List<String> lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer id = ids.get(lines.get(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines.get(i), id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,205 @@
+package com.vcs.Utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the filtered listing of every working-tree directory, keyed by the
+ * directory's modification time.
+ *
+ * Creating, deleting or renaming an entry updates its directory's mtime, so a
+ * directory whose mtime is unchanged can reuse its cached listing without a
+ * readdir. Each listing also records the fingerprint of the .vcsignore rules
+ * it was filtered with, so editing a nested .vcsignore only invalidates the
+ * directories below it. The whole cache is dropped when the sparse-checkout
+ * rules change, and the listings of a directory that is gone are dropped
+ * once its parent is listed again or a walk finds it missing. The cache
+ * lives in {@code .vcs/untracked-cache}.
+ */
+public class UntrackedCache {
+    private static final Path CACHE_FILE = Paths.get(".vcs", "untracked-cache");
+    private static final Path[] RULE_FILES = { Paths.get(".vcs", "info", "sparse-checkout") };
+    // Bumped when the file layout changes, so older caches are discarded
+    private static final String FORMAT = "2";
+
+    // A directory changed within the same clock tick as the listing may not
+    // show a new mtime, so listings that recent are never trusted
+    private static final long RACY_WINDOW_MS = 1000;
+
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+    private final long scanStart = System.currentTimeMillis();
+    private String rulesFingerprint;
+    private long writtenAt;
+    private volatile boolean dirty;
+
+    /**
+     * Files and subdirectories of one directory that survived the ignore,
+     * hidden-path and sparse-checkout filters.
+     */
+    public static class Listing {
+        public final long mtime;
+        public final String ignoreRules;
+        public final List<String> files;
+        public final List<String> directories;
+
+        public Listing(long mtime, String ignoreRules, List<String> files, List<String> directories) {
+            this.mtime = mtime;
+            this.ignoreRules = ignoreRules;
+            this.files = files;
+            this.directories = directories;
+        }
+    }
+
+    public UntrackedCache() {
+        try {
+            rulesFingerprint = fingerprintRules();
+            load();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            listings.clear();
+        }
+    }
+
+    /**
+     * Looks up the listing of a directory.
+     *
+     * @param directory   Directory relative to the project root, "" for the root
+     * @param mtime       Current modification time of the directory
+     * @param ignoreRules Fingerprint of the ignore rules now in effect for the
+     *                    directory
+     * @return The cached listing, or null if the directory must be read
+     */
+    public Listing get(String directory, long mtime, String ignoreRules) {
+        Listing listing = listings.get(directory);
+        if (listing == null || listing.mtime != mtime || !listing.ignoreRules.equals(ignoreRules)
+                || mtime + RACY_WINDOW_MS >= writtenAt) {
+            return null;
+        }
+        return listing;
+    }
+
+    /**
+     * Records a freshly read listing.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @param listing   Filtered entries of the directory
+     */
+    public void put(String directory, Listing listing) {
+        Listing previous = listings.put(directory, listing);
+        dirty = true;
+        if (previous != null) {
+            // Subdirectories that are gone take their listings with them
+            Set<String> current = new HashSet<>(listing.directories);
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            for (String name : previous.directories) {
+                if (!current.contains(name)) {
+                    remove(prefix + name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the listings of a directory that no longer exists and of every
+     * directory below it.
+     *
+     * @param directory Directory relative to the project root
+     */
+    public void remove(String directory) {
+        String prefix = directory + "/";
+        boolean removed = listings.remove(directory) != null;
+        removed |= listings.keySet().removeIf(key -> key.startsWith(prefix));
+        if (removed) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the cache back if any listing was refreshed or dropped.
+     *
+     * @throws IOException If the cache file cannot be written
+     */
+    public void save() throws IOException {
+        if (!dirty || rulesFingerprint == null) {
+            return;
+        }
+
+        Path tempFile = Files.createTempFile(CACHE_FILE.getParent(), "untracked-cache", null);
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+            writer.write(rulesFingerprint + " " + scanStart);
+            writer.newLine();
+            for (Map.Entry<String, Listing> entry : listings.entrySet()) {
+                Listing listing = entry.getValue();
+                writer.write("D " + listing.mtime + " " + listing.ignoreRules + " " + entry.getKey());
+                writer.newLine();
+                for (String directory : listing.directories) {
+                    writer.write("d " + directory);
+                    writer.newLine();
+                }
+                for (String file : listing.files) {
+                    writer.write("f " + file);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tempFile, CACHE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(CACHE_FILE)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(CACHE_FILE)) {
+            String[] header = reader.readLine().split(" ");
+            if (!header[0].equals(rulesFingerprint)) {
+                // Ignore or sparse rules changed; every listing may be stale
+                dirty = true;
+                return;
+            }
+            writtenAt = Long.parseLong(header[1]);
+
+            String line;
+            List<String> files = null;
+            List<String> directories = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("D ")) {
+                    int separator = line.indexOf(' ', 2);
+                    int rulesEnd = line.indexOf(' ', separator + 1);
+                    files = new ArrayList<>();
+                    directories = new ArrayList<>();
+                    listings.put(line.substring(rulesEnd + 1), new Listing(Long.parseLong(line.substring(2, separator)),
+                            line.substring(separator + 1, rulesEnd), files, directories));
+                } else if (line.startsWith("d ") && directories != null) {
+                    directories.add(line.substring(2));
+                } else if (line.startsWith("f ") && files != null) {
+                    files.add(line.substring(2));
+                }
+            }
+        }
+    }
+
+    private static String fingerprintRules() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(FORMAT.getBytes());
+        for (Path ruleFile : RULE_FILES) {
+            digest.update(Files.exists(ruleFile) ? Files.readAllBytes(ruleFile) : new byte[0]);
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,554 @@
+package com.vcs.Utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+import com.vcs.Commands.CreateBlob;
+
+/**
+ * Hashes the working tree in parallel without writing any objects.
+ *
+ * The working tree is read one directory at a time with
+ * {@link #readDirectory(String)}, which is what the {@link TreeWalker} streams
+ * over. Every directory is read by its own task and its files are hashed in
+ * batches, all on a work-stealing pool, and the walker {@link #prefetch
+ * prefetches} the subdirectories of each directory it enters, so listing and
+ * hashing run across directories in parallel while a few large directories
+ * or files do not hold up the rest. Results land in sorted maps, which keeps
+ * the output independent of scheduling.
+ *
+ * When a {@link FileSystemMonitor} daemon is running, each directory read with
+ * {@link #readDirectory(String)} is snapshotted under
+ * {@code .vcs/fsmonitor/snapshot}, in a tree mirroring the working tree, and
+ * the snapshot is served until the daemon reports a change in the directory.
+ * Snapshots are read and written one directory at a time, so memory stays
+ * bounded by the directories being visited. Directory listings come from the
+ * {@link UntrackedCache} whenever the directory's mtime shows nothing was
+ * added or removed.
+ *
+ * The working tree can also be read file by file with {@link #files(String)}.
+ */
+public class WorkingTreeScanner implements AutoCloseable {
+    /** Value {@link #readDirectory(String)} maps subdirectories to */
+    public static final String DIRECTORY = "/";
+
+    private static final int FILES_PER_TASK = 32;
+    private static final Path SNAPSHOT_DIR = Paths.get(".vcs", "fsmonitor", "snapshot");
+    private static final Path TOKEN_FILE = SNAPSHOT_DIR.resolve(".token");
+    // Hidden names are never tracked, so this cannot clash with a mirrored
+    // subdirectory
+    private static final String ENTRIES_FILE = ".entries";
+
+    private final Path projectRoot;
+    private final IgnoreManager ignore;
+    private final SparseCheckout sparseCheckout;
+    private final int threads;
+    private final UntrackedCache untrackedCache = new UntrackedCache();
+    private final ForkJoinPool pool;
+    private final Map<String, ForkJoinTask<NavigableMap<String, String>>> prefetched = new ConcurrentHashMap<>();
+    private volatile boolean monitored;
+    private boolean monitorChecked;
+
+    /**
+     * @param ignore         Ignore rules applied to files
+     * @param sparseCheckout Cone limiting which directories are scanned
+     * @param threads        Number of worker threads; values below 1 use one
+     *                       thread per available processor
+     */
+    public WorkingTreeScanner(IgnoreManager ignore, SparseCheckout sparseCheckout, int threads) {
+        this.projectRoot = Paths.get(System.getProperty("user.dir")).toAbsolutePath().normalize();
+        this.ignore = ignore;
+        this.sparseCheckout = sparseCheckout;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    /**
+     * Reads one directory of the working tree, hashing its files in parallel.
+     * When a file system monitor is running, a directory the monitor reports
+     * no changes in is served from its snapshot without being listed. A
+     * directory that no longer exists is dropped from the untracked cache.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @return File names mapped to blob hashes and subdirectory names mapped
+     *         to {@link #DIRECTORY}, in name order; empty if the directory
+     *         does not exist
+     * @throws IOException If the directory cannot be listed
+     */
+    public NavigableMap<String, String> readDirectory(String directory) throws IOException {
+        return readDirectory(directory, Pathspec.ALL);
+    }
+
+    /**
+     * Reads one directory of the working tree like
+     * {@link #readDirectory(String)}, hashing only the files a pathspec
+     * selects; the others are left out.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @param pathspec  Files to hash
+     * @return File names mapped to blob hashes and subdirectory names mapped
+     *         to {@link #DIRECTORY}, in name order
+     * @throws IOException If the directory cannot be listed
+     */
+    public NavigableMap<String, String> readDirectory(String directory, Pathspec pathspec) throws IOException {
+        checkMonitor();
+        ForkJoinTask<NavigableMap<String, String>> task = prefetched.remove(directory);
+        try {
+            return task != null ? task.join() : pool.invoke(new DirectoryRead(directory, pathspec));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Starts reading a directory on the worker pool, to be picked up by a
+     * later {@link #readDirectory(String, Pathspec)} with the same pathspec.
+     * The result is held until then, so callers prefetch only the directories
+     * they are about to read.
+     *
+     * @param directory Directory relative to the project root
+     * @param pathspec  Files to hash
+     * @throws IOException If the file system monitor cannot be queried
+     */
+    public void prefetch(String directory, Pathspec pathspec) throws IOException {
+        checkMonitor();
+        prefetched.computeIfAbsent(directory, key -> pool.submit(new DirectoryRead(key, pathspec)));
+    }
+
+    private void checkMonitor() throws IOException {
+        if (!monitorChecked) {
+            monitorChecked = true;
+            monitored = startMonitoring();
+        }
+    }
+
+    /**
+     * Hashes a single working-tree file regardless of ignore rules, for
+     * tracked files that a directory listing filtered out.
+     *
+     * @param path Path relative to the project root
+     * @return Blob hash, or null if the path is not a regular file
+     * @throws IOException If the file cannot be read
+     */
+    public String hashFile(String path) throws IOException {
+        Path file = projectRoot.resolve(path);
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        try {
+            return CreateBlob.hashObject(Files.readAllBytes(file), false);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Lazily iterates the files below a directory in path order, reading one
+     * directory at a time. Hidden, ignored and sparse directories are pruned
+     * before they are read, and only the listings of the directories on the
+     * current path are held, so memory grows with depth rather than with the
+     * number of files.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @return Iterator over file paths relative to the project root
+     */
+    public Iterator<String> files(String directory) {
+        return files(directory, Pathspec.ALL);
+    }
+
+    /**
+     * Iterates the files below a directory that a pathspec selects, like
+     * {@link #files(String)}. Directories that cannot contain a match are not
+     * read.
+     *
+     * @param directory Directory relative to the project root, "" for the root
+     * @param pathspec  Files to return
+     * @return Iterator over file paths relative to the project root
+     */
+    public Iterator<String> files(String directory, Pathspec pathspec) {
+        return new FileIterator(directory, pathspec);
+    }
+
+    /**
+     * Cancels unread prefetches, saves refreshed directory listings and stops
+     * the worker threads.
+     *
+     * @throws IOException If the untracked cache cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        // A walk that stopped early leaves prefetched directories unread
+        prefetched.values().forEach(task -> task.cancel(false));
+        try {
+            untrackedCache.save();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Asks the monitor what changed since the snapshots were taken and drops
+     * the snapshots those changes make stale. Every snapshot is dropped when
+     * the monitor cannot tell.
+     *
+     * @return true if a monitor answered and snapshots can be used
+     */
+    private boolean startMonitoring() throws IOException {
+        if (FileSystemMonitor.runningDaemon() < 0) {
+            return false;
+        }
+        String token = readSnapshotToken();
+        FileSystemMonitor.Changes changes = FileSystemMonitor.query(token);
+        if (changes == null) {
+            return false;
+        }
+
+        if (token == null || changes.paths == null) {
+            deleteRecursively(SNAPSHOT_DIR);
+        } else {
+            for (String path : changes.paths) {
+                invalidate(path);
+            }
+        }
+
+        // Written last, so an interrupted run leaves the old token and the
+        // same changes are reported again
+        Files.createDirectories(SNAPSHOT_DIR);
+        Path tempFile = Files.createTempFile(SNAPSHOT_DIR, ".token", null);
+        Files.writeString(tempFile, changes.token);
+        Files.move(tempFile, TOKEN_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Drops the snapshot of the directory holding a changed path and, in case
+     * the path is or was a directory, every snapshot below it.
+     */
+    private void invalidate(String path) throws IOException {
+        if (isHidden(path)) {
+            // Edited ignore files are caught by the rules fingerprint
+            return;
+        }
+        int slash = path.lastIndexOf('/');
+        Files.deleteIfExists(snapshotFile(slash < 0 ? "" : path.substring(0, slash)));
+        deleteRecursively(SNAPSHOT_DIR.resolve(path));
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path entry : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(entry);
+            }
+        }
+    }
+
+    private static boolean isHidden(String path) {
+        return path.startsWith(".") || path.contains("/.");
+    }
+
+    private static Path snapshotFile(String directory) {
+        return (directory.isEmpty() ? SNAPSHOT_DIR : SNAPSHOT_DIR.resolve(directory)).resolve(ENTRIES_FILE);
+    }
+
+    private String readSnapshotToken() {
+        if (!Files.isRegularFile(TOKEN_FILE)) {
+            return null;
+        }
+        try {
+            return Files.readString(TOKEN_FILE).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot of one directory: a line with the fingerprint of the
+     * ignore rules it was listed with, then "name:hash" per file and "name/"
+     * per subdirectory.
+     *
+     * @return The entries as {@link #readDirectory(String)} returns them, or
+     *         null if there is no snapshot or the ignore rules have changed
+     */
+    private NavigableMap<String, String> readDirectorySnapshot(String directory) {
+        Path file = snapshotFile(directory);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        NavigableMap<String, String> entries = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            if (!ignore.getRulesFingerprint(directory).equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf(':');
+                if (line.endsWith("/")) {
+                    entries.put(line.substring(0, line.length() - 1), DIRECTORY);
+                } else if (separator > 0) {
+                    entries.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return entries;
+    }
+
+    private void writeDirectorySnapshot(String directory, String ignoreRules, Map<String, String> entries)
+            throws IOException {
+        Path file = snapshotFile(directory);
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), ENTRIES_FILE, null);
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+            writer.write(ignoreRules);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.write(DIRECTORY.equals(entry.getValue()) ? entry.getKey() + "/"
+                        : entry.getKey() + ":" + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String relativize(Path path) {
+        return projectRoot.relativize(path).toString();
+    }
+
+    /**
+     * Depth-first iterator with one frame per open directory. Entries of a
+     * directory are ordered with subdirectories keyed as "name/", which makes
+     * the overall order match the sorted order of the index.
+     */
+    private class FileIterator implements Iterator<String> {
+        private final Deque<Iterator<String>> frames = new ArrayDeque<>();
+        private final Deque<String> prefixes = new ArrayDeque<>();
+        private final Pathspec pathspec;
+        private String next;
+
+        FileIterator(String directory, Pathspec pathspec) {
+            this.pathspec = pathspec;
+            open(directory);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !frames.isEmpty()) {
+                Iterator<String> frame = frames.peek();
+                if (!frame.hasNext()) {
+                    frames.pop();
+                    prefixes.pop();
+                    continue;
+                }
+
+                String name = frame.next();
+                String path = prefixes.peek() + name;
+                if (name.endsWith("/")) {
+                    String directory = path.substring(0, path.length() - 1);
+                    if (pathspec.mayMatchBelow(directory)) {
+                        open(directory);
+                    }
+                } else if (pathspec.matches(path)) {
+                    next = path;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = next;
+            next = null;
+            return path;
+        }
+
+        private void open(String directory) {
+            UntrackedCache.Listing listing;
+            try {
+                listing = list(projectRoot.resolve(directory));
+            } catch (IOException e) {
+                // Log any access errors but continue traversal
+                System.err.println("Failed to access " + directory + ": " + e.getMessage());
+                return;
+            }
+
+            List<String> names = new ArrayList<>(listing.files);
+            listing.directories.forEach(name -> names.add(name + "/"));
+            Collections.sort(names);
+            frames.push(names.iterator());
+            prefixes.push(directory.isEmpty() ? "" : directory + "/");
+        }
+    }
+
+    /**
+     * Reads one directory, from its snapshot or by listing it and forking a
+     * task per batch of files.
+     */
+    private class DirectoryRead extends RecursiveTask<NavigableMap<String, String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String directory;
+        private final Pathspec pathspec;
+
+        DirectoryRead(String directory, Pathspec pathspec) {
+            this.directory = directory;
+            this.pathspec = pathspec;
+        }
+
+        @Override
+        protected NavigableMap<String, String> compute() {
+            try {
+                return read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private NavigableMap<String, String> read() throws IOException {
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            NavigableMap<String, String> entries = new TreeMap<>();
+            if (monitored) {
+                NavigableMap<String, String> snapshot = readDirectorySnapshot(directory);
+                if (snapshot != null) {
+                    snapshot.forEach((name, hash) -> {
+                        if (DIRECTORY.equals(hash) || pathspec.matches(prefix + name)) {
+                            entries.put(name, hash);
+                        }
+                    });
+                    return entries;
+                }
+            }
+
+            Path absoluteDirectory = projectRoot.resolve(directory);
+            if (!Files.isDirectory(absoluteDirectory, LinkOption.NOFOLLOW_LINKS)) {
+                untrackedCache.remove(directory);
+                return entries;
+            }
+            UntrackedCache.Listing listing = list(absoluteDirectory);
+
+            NavigableMap<String, String> hashes = new ConcurrentSkipListMap<>();
+            List<RecursiveAction> tasks = new ArrayList<>();
+            for (int i = 0; i < listing.files.size(); i += FILES_PER_TASK) {
+                List<Path> batch = new ArrayList<>();
+                for (String name : listing.files.subList(i, Math.min(i + FILES_PER_TASK, listing.files.size()))) {
+                    if (pathspec.matches(prefix + name)) {
+                        batch.add(absoluteDirectory.resolve(name));
+                    }
+                }
+                tasks.add(new FileHash(batch, hashes));
+            }
+            invokeAll(tasks);
+
+            hashes.forEach((path, hash) -> entries.put(path.substring(prefix.length()), hash));
+            listing.directories.forEach(name -> entries.put(name, DIRECTORY));
+            if (monitored && hashes.size() == listing.files.size()) {
+                // Only a directory whose files were all selected and read is
+                // snapshotted; others are listed again next time
+                writeDirectorySnapshot(directory, listing.ignoreRules, entries);
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Lists the entries of a directory that the walk descends into or hashes,
+     * reusing the cached listing when the directory's mtime is unchanged.
+     */
+    private UntrackedCache.Listing list(Path directory) throws IOException {
+        String relativeDirectory = relativize(directory);
+        long mtime = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS).toMillis();
+        String ignoreRules = ignore.getRulesFingerprint(relativeDirectory);
+        UntrackedCache.Listing listing = untrackedCache.get(relativeDirectory, mtime, ignoreRules);
+        if (listing != null) {
+            return listing;
+        }
+
+        List<String> files = new ArrayList<>();
+        List<String> directories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                // Hidden files and directories, including .vcs, are never tracked
+                String name = entry.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue;
+                }
+
+                String relativePath = relativize(entry);
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    // Directories outside the cone stay collapsed in the index, and
+                    // ignored directories are pruned without being read
+                    if (!sparseCheckout.isSparseDirectory(relativePath) && !ignore.isIgnored(relativePath, true)) {
+                        directories.add(name);
+                    }
+                } else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)
+                        && !ignore.isIgnored(relativePath, false)
+                        && sparseCheckout.isFileIncluded(relativePath)) {
+                    files.add(name);
+                }
+            }
+        }
+
+        listing = new UntrackedCache.Listing(mtime, ignoreRules, files, directories);
+        untrackedCache.put(relativeDirectory, listing);
+        return listing;
+    }
+
+    /**
+     * Hashes a batch of files from one directory.
+     */
+    private class FileHash extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> batch;
+        private final NavigableMap<String, String> files;
+
+        FileHash(List<Path> batch, NavigableMap<String, String> files) {
+            this.batch = batch;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            for (Path file : batch) {
+                try {
+                    files.put(relativize(file), CreateBlob.hashObject(Files.readAllBytes(file), false));
+                } catch (IOException | NoSuchAlgorithmException e) {
+                    System.err.println("Failed to access " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}